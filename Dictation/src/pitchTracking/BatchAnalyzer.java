@@ -0,0 +1,259 @@
+package pitchTracking;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Analyzes every wav file in a directory in one JVM, on a fixed number of threads
+ * Each worker thread keeps its own analyzers (and so its own FFT plans), one per
+ * sample rate it has met, so nothing is shared between threads and nothing is
+ * rebuilt from one file to the next
+ * Each file is streamed; its pitch track is written out as it is found and only
+ * running totals are kept for its summary
+ * Usage: java pitchTracking.BatchAnalyzer [-d peak|sliding|yin|hps|goertzel|cqt] [-t threads] [-o trackdir] <directory>
+ */
+public class BatchAnalyzer {
+	
+	public final String detectorName;
+	public final File trackDirectory;	//where pitch tracks are written, null for none
+	
+	private final ThreadLocal<Map<Float, MultiplePitchRead>> analyzers = new ThreadLocal<Map<Float, MultiplePitchRead>>() {
+		protected Map<Float, MultiplePitchRead> initialValue()
+		{
+			return new HashMap<Float, MultiplePitchRead>();
+		}
+	};
+	
+	public BatchAnalyzer(String detectorName, File trackDirectory)
+	{
+		this.detectorName = detectorName;
+		this.trackDirectory = trackDirectory;
+	}
+	
+	/*
+	 * The summary of one file's pitch track
+	 */
+	public static class Summary {
+		
+		public File file;
+		public double seconds;		//length of the audio
+		public int frames;			//blocks analyzed
+		public int voiced;			//blocks with a pitch
+		public double minimum = Double.NaN;	//lowest pitch in Hz
+		public double maximum = Double.NaN;	//highest pitch in Hz
+		public double meanMidi = Double.NaN;	//mean pitch of the voiced blocks, as a MIDI note
+		public String error;		//why the file could not be analyzed, null if it was
+		
+		public String toString()
+		{
+			if (error != null)
+				return String.format("%-24s failed: %s", file.getName(), error);
+			return String.format("%-24s %7.2fs %5d frames %5.1f%% voiced  %7.1f-%7.1fHz  mean %-4s",
+					file.getName(), seconds, frames, frames == 0 ? 0 : 100.0 * voiced / frames,
+					minimum, maximum, Double.isNaN(meanMidi) ? "-" : NoteSegmenter.noteName((int) Math.round(meanMidi)));
+		}
+	}
+	
+	/*
+	 * Analyzes one file on the calling thread
+	 * Returns its summary; a file that cannot be read gets a summary with an error
+	 */
+	public Summary analyze(File soundFile)
+	{
+		final Summary summary = new Summary();
+		summary.file = soundFile;
+		Writer track = null;
+		try {
+			WavReader reader = new WavReader(soundFile);
+			try {
+				final float sampleRate = reader.header.sampleRate;
+				final MultiplePitchRead pitchReader = analyzer(sampleRate);
+				summary.seconds = reader.header.seconds();
+				if (trackDirectory != null)
+					track = new BufferedWriter(new FileWriter(new File(trackDirectory, soundFile.getName() + ".pitch.txt")));
+				final Writer out = track;
+				final double[] midiSum = new double[1];
+				
+				pitchReader.analyze(reader, new PitchListener() {
+					public void pitchDetected(long position, double frequency) {
+						summary.frames++;
+						if (frequency > 0)
+						{
+							summary.voiced++;
+							if (!(summary.minimum <= frequency))
+								summary.minimum = frequency;
+							if (!(summary.maximum >= frequency))
+								summary.maximum = frequency;
+							midiSum[0] += NoteSegmenter.midi(frequency);
+						}
+						if (out != null)
+						{
+							try {
+								out.write(String.format("%.3f\t%.2f%n", (position + pitchReader.blockSize / 2.0) / sampleRate, frequency));
+							} catch (IOException e) {
+								throw new RuntimeException(e);
+							}
+						}
+					}
+				});
+				if (summary.voiced > 0)
+					summary.meanMidi = midiSum[0] / summary.voiced;
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			summary.error = e.getMessage();
+		} catch (RuntimeException e) {
+			summary.error = e.getCause() != null ? e.getCause().toString() : e.toString();
+		} finally {
+			if (track != null)
+			{
+				try {
+					track.close();
+				} catch (IOException e) {
+					if (summary.error == null)
+						summary.error = e.getMessage();
+				}
+			}
+		}
+		return summary;
+	}
+	
+	/*
+	 * Returns this thread's analyzer for a sample rate, building it the first time
+	 */
+	private MultiplePitchRead analyzer(float sampleRate)
+	{
+		Map<Float, MultiplePitchRead> mine = analyzers.get();
+		MultiplePitchRead pitchReader = mine.get(sampleRate);
+		if (pitchReader == null)
+		{
+			pitchReader = new MultiplePitchRead(sampleRate, sampleRate, "batch");
+			pitchReader.detector = pitchReader.newDetector(detectorName);
+			mine.put(sampleRate, pitchReader);
+		}
+		return pitchReader;
+	}
+	
+	/*
+	 * Analyzes the files on a pool of the given number of threads, printing each
+	 * summary as its file finishes and the throughput at the end
+	 * Returns the summaries, in the order the files were given
+	 */
+	public Summary[] analyzeAll(final File[] files, int threads) throws InterruptedException
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CompletionService<Integer> done = new ExecutorCompletionService<Integer>(pool);
+		final Summary[] summaries = new Summary[files.length];
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < files.length; i++)
+			{
+				final int index = i;
+				done.submit(new Callable<Integer>() {
+					public Integer call()
+					{
+						summaries[index] = analyze(files[index]);
+						return index;
+					}
+				});
+			}
+			
+			double audioSeconds = 0;
+			for (int finished = 1; finished <= files.length; finished++)
+			{
+				Summary summary;
+				try {
+					summary = summaries[done.take().get()];
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+				audioSeconds += summary.seconds;
+				System.out.println(String.format("[%d/%d] %s", finished, files.length, summary));
+			}
+			
+			double elapsed = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%d files, %.1f s of audio in %.2f s on %d threads: %.2f files/s, %.1f audio-s/s",
+					files.length, audioSeconds, elapsed, threads, files.length / elapsed, audioSeconds / elapsed));
+		} finally {
+			pool.shutdown();
+		}
+		return summaries;
+	}
+	
+	public static void main(String[] args) throws InterruptedException
+	{
+		String detectorName = "peak";
+		int threads = Runtime.getRuntime().availableProcessors();
+		File trackDirectory = null;
+		int arg = 0;
+		while (arg < args.length && args[arg].startsWith("-"))
+		{
+			//every option takes a value
+			if (arg + 1 == args.length)
+				printUsageAndExit();
+			if (args[arg].equals("-d"))
+				detectorName = args[arg + 1];
+			else if (args[arg].equals("-t"))
+			{
+				try {
+					threads = Integer.parseInt(args[arg + 1]);
+				} catch (NumberFormatException e) {
+					printUsageAndExit();
+				}
+				if (threads < 1)
+					printUsageAndExit();
+			}
+			else if (args[arg].equals("-o"))
+				trackDirectory = new File(args[arg + 1]);
+			else
+				printUsageAndExit();
+			arg += 2;
+		}
+		if (args.length - arg != 1)
+			printUsageAndExit();
+		
+		File directory = new File(args[arg]);
+		File[] files = directory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.toLowerCase().endsWith(".wav");
+			}
+		});
+		if (files == null)
+		{
+			System.out.println("Not a directory: " + directory);
+			System.exit(1);
+		}
+		Arrays.sort(files);
+		
+		BatchAnalyzer batch = new BatchAnalyzer(detectorName, trackDirectory);
+		if (new MultiplePitchRead(44100, 44100, "batch").newDetector(detectorName) == null)
+		{
+			System.out.println("Unknown detector " + detectorName);
+			printUsageAndExit();
+		}
+		if (trackDirectory != null)
+			trackDirectory.mkdirs();
+		batch.analyzeAll(files, threads);
+	}
+	
+	private static void printUsageAndExit()
+	{
+		System.out.println("BatchAnalyzer: usage:");
+		System.out.println("\tjava BatchAnalyzer [-d peak|sliding|yin|hps|goertzel|cqt] [-t threads] [-o trackdir] <directory>");
+		System.exit(1);
+	}
+}
@@ -0,0 +1,106 @@
+package pitchTracking;
+
+/*
+ * One second order IIR section
+ * Computes y = (b0 + b1 z^-1 + b2 z^-2) / (1 + a1 z^-1 + a2 z^-2) x in transposed
+ * direct form II, which keeps only two numbers of state
+ */
+public class Biquad {
+	
+	public final double b0, b1, b2;
+	public final double a1, a2;
+	
+	private double s1, s2;	//state carried between samples
+	
+	public Biquad(double b0, double b1, double b2, double a1, double a2)
+	{
+		this.b0 = b0;
+		this.b1 = b1;
+		this.b2 = b2;
+		this.a1 = a1;
+		this.a2 = a2;
+	}
+	
+	/*
+	 * Builds the digital section for an analog one,
+	 * (B2 s^2 + B1 s + B0) / (A2 s^2 + A1 s + A0), with the bilinear transform
+	 * Takes the sample rate; frequencies in the analog section must already be prewarped
+	 */
+	public static Biquad bilinear(double B2, double B1, double B0, double A2, double A1, double A0, double sampleRate)
+	{
+		double k = 2 * sampleRate;
+		double kk = k * k;
+		double a0 = A2 * kk + A1 * k + A0;
+		return new Biquad(
+				(B2 * kk + B1 * k + B0) / a0,
+				2 * (B0 - B2 * kk) / a0,
+				(B2 * kk - B1 * k + B0) / a0,
+				2 * (A0 - A2 * kk) / a0,
+				(A2 * kk - A1 * k + A0) / a0);
+	}
+	
+	/*
+	 * Returns a copy of this section scaled by a constant gain
+	 */
+	public Biquad scaled(double gain)
+	{
+		return new Biquad(b0 * gain, b1 * gain, b2 * gain, a1, a2);
+	}
+	
+	/*
+	 * Filters one sample
+	 */
+	public double process(double x)
+	{
+		double y = b0 * x + s1;
+		s1 = b1 * x - a1 * y + s2;
+		s2 = b2 * x - a2 * y;
+		return y;
+	}
+	
+	/*
+	 * Filters length samples starting at offset in place
+	 */
+	public void process(double[] samples, int offset, int length)
+	{
+		double z1 = s1;
+		double z2 = s2;
+		int finish = offset + length;
+		for (int i = offset; i < finish; i++)
+		{
+			double x = samples[i];
+			double y = b0 * x + z1;
+			z1 = b1 * x - a1 * y + z2;
+			z2 = b2 * x - a2 * y;
+			samples[i] = y;
+		}
+		s1 = z1;
+		s2 = z2;
+	}
+	
+	/*
+	 * Filters single precision samples in place; the state stays in double precision
+	 */
+	public void process(float[] samples, int offset, int length)
+	{
+		double z1 = s1;
+		double z2 = s2;
+		int finish = offset + length;
+		for (int i = offset; i < finish; i++)
+		{
+			double x = samples[i];
+			double y = b0 * x + z1;
+			z1 = b1 * x - a1 * y + z2;
+			z2 = b2 * x - a2 * y;
+			samples[i] = (float) y;
+		}
+		s1 = z1;
+		s2 = z2;
+	}
+	
+	public void reset()
+	{
+		s1 = 0;
+		s2 = 0;
+	}
+}
@@ -0,0 +1,227 @@
+package pitchTracking;
+
+/*
+ * A high order IIR filter built as a chain of biquad sections
+ * Designs Butterworth (maximally flat) and Chebyshev type I (steeper, with passband
+ * ripple) low-pass, high-pass and band-pass filters from their analog prototypes
+ */
+public class BiquadCascade implements SampleFilter {
+	
+	private final Biquad[] sections;
+	
+	public BiquadCascade(Biquad[] sections)
+	{
+		this.sections = sections;
+	}
+	
+	/*
+	 * Returns a Butterworth low-pass filter of the given order, -3dB at the cutoff
+	 */
+	public static BiquadCascade butterworthLowPass(int order, double cutoff, double sampleRate)
+	{
+		return design(butterworthPoles(order), false, 1, cutoff, sampleRate);
+	}
+	
+	/*
+	 * Returns a Butterworth high-pass filter of the given order, -3dB at the cutoff
+	 */
+	public static BiquadCascade butterworthHighPass(int order, double cutoff, double sampleRate)
+	{
+		return design(butterworthPoles(order), true, 1, cutoff, sampleRate);
+	}
+	
+	/*
+	 * Returns a Chebyshev type I low-pass filter of the given order
+	 * The passband ripples by rippleDb and ends at the cutoff
+	 */
+	public static BiquadCascade chebyshevLowPass(int order, double rippleDb, double cutoff, double sampleRate)
+	{
+		return design(chebyshevPoles(order, rippleDb), false, chebyshevGain(order, rippleDb), cutoff, sampleRate);
+	}
+	
+	/*
+	 * Returns a Chebyshev type I high-pass filter of the given order
+	 * The passband ripples by rippleDb and starts at the cutoff
+	 */
+	public static BiquadCascade chebyshevHighPass(int order, double rippleDb, double cutoff, double sampleRate)
+	{
+		return design(chebyshevPoles(order, rippleDb), true, chebyshevGain(order, rippleDb), cutoff, sampleRate);
+	}
+	
+	/*
+	 * Returns a Butterworth band-pass filter passing low through high,
+	 * a high-pass and a low-pass of the given order one after the other
+	 */
+	public static BiquadCascade butterworthBandPass(int order, double low, double high, double sampleRate)
+	{
+		return butterworthHighPass(order, low, sampleRate).then(butterworthLowPass(order, high, sampleRate));
+	}
+	
+	/*
+	 * Returns a Chebyshev type I band-pass filter passing low through high,
+	 * a high-pass and a low-pass of the given order one after the other
+	 * Each edge ripples by rippleDb, so where the two passbands overlap the ripple can add up
+	 */
+	public static BiquadCascade chebyshevBandPass(int order, double rippleDb, double low, double high, double sampleRate)
+	{
+		return chebyshevHighPass(order, rippleDb, low, sampleRate).then(chebyshevLowPass(order, rippleDb, high, sampleRate));
+	}
+	
+	/*
+	 * Returns a filter that runs this one and then another
+	 */
+	public BiquadCascade then(BiquadCascade next)
+	{
+		Biquad[] both = new Biquad[sections.length + next.sections.length];
+		System.arraycopy(sections, 0, both, 0, sections.length);
+		System.arraycopy(next.sections, 0, both, sections.length, next.sections.length);
+		return new BiquadCascade(both);
+	}
+	
+	/*
+	 * Filters one sample through every section
+	 */
+	public double process(double x)
+	{
+		for (Biquad section : sections)
+		{
+			x = section.process(x);
+		}
+		return x;
+	}
+	
+	/*
+	 * Filters a block in place, one section at a time over the whole block
+	 */
+	public void process(double[] samples, int offset, int length)
+	{
+		for (Biquad section : sections)
+		{
+			section.process(samples, offset, length);
+		}
+	}
+	
+	/*
+	 * Filters a whole array of samples in place and returns it
+	 */
+	public double[] filter(double[] samples)
+	{
+		process(samples, 0, samples.length);
+		return samples;
+	}
+	
+	/*
+	 * Filters a block of single precision samples in place
+	 */
+	public void process(float[] samples, int offset, int length)
+	{
+		for (Biquad section : sections)
+		{
+			section.process(samples, offset, length);
+		}
+	}
+	
+	/*
+	 * Filters a whole array of single precision samples in place and returns it
+	 */
+	public float[] filter(float[] samples)
+	{
+		process(samples, 0, samples.length);
+		return samples;
+	}
+	
+	public void reset()
+	{
+		for (Biquad section : sections)
+		{
+			section.reset();
+		}
+	}
+	
+	/*
+	 * Turns the poles of a normalized analog low-pass prototype (cutoff 1 rad/s) into
+	 * biquad sections with the given cutoff, as a low-pass or a high-pass
+	 * Poles come as {real, imaginary} with one of each conjugate pair (imaginary > 0),
+	 * plus one real pole for odd orders; gain scales the first section
+	 */
+	private static BiquadCascade design(double[][] poles, boolean highPass, double gain, double cutoff, double sampleRate)
+	{
+		//prewarp so the digital cutoff lands where it was asked for
+		double w = 2 * sampleRate * Math.tan(Math.PI * cutoff / sampleRate);
+		Biquad[] sections = new Biquad[poles.length];
+		for (int i = 0; i < poles.length; i++)
+		{
+			double re = poles[i][0];
+			double im = poles[i][1];
+			if (im == 0)
+			{
+				//first order section with a pole at re (< 0)
+				if (highPass)
+					sections[i] = Biquad.bilinear(0, -re, 0, 0, -re, w, sampleRate);
+				else
+					sections[i] = Biquad.bilinear(0, 0, -re * w, 0, 1, -re * w, sampleRate);
+			}
+			else
+			{
+				//second order section with poles at re +- i im, unity gain in the passband
+				double m = re * re + im * im;
+				if (highPass)
+					sections[i] = Biquad.bilinear(m, 0, 0, m, -2 * re * w, w * w, sampleRate);
+				else
+					sections[i] = Biquad.bilinear(0, 0, m * w * w, 1, -2 * re * w, m * w * w, sampleRate);
+			}
+		}
+		sections[0] = sections[0].scaled(gain);
+		return new BiquadCascade(sections);
+	}
+	
+	/*
+	 * Returns the prototype poles of a Butterworth filter, evenly spaced on the unit circle
+	 */
+	private static double[][] butterworthPoles(int order)
+	{
+		double[][] poles = new double[(order + 1) / 2][];
+		for (int k = 0; k < order / 2; k++)
+		{
+			double theta = Math.PI * (2 * k + 1) / (2 * order);
+			poles[k] = new double[] { -Math.sin(theta), Math.cos(theta) };
+		}
+		if (order % 2 == 1)
+			poles[order / 2] = new double[] { -1, 0 };
+		return poles;
+	}
+	
+	/*
+	 * Returns the prototype poles of a Chebyshev type I filter, on an ellipse
+	 */
+	private static double[][] chebyshevPoles(int order, double rippleDb)
+	{
+		double epsilon = Math.sqrt(Math.pow(10, rippleDb / 10) - 1);
+		double mu = asinh(1 / epsilon) / order;
+		double[][] poles = new double[(order + 1) / 2][];
+		for (int k = 0; k < order / 2; k++)
+		{
+			double theta = Math.PI * (2 * k + 1) / (2 * order);
+			poles[k] = new double[] { -Math.sinh(mu) * Math.sin(theta), Math.cosh(mu) * Math.cos(theta) };
+		}
+		if (order % 2 == 1)
+			poles[order / 2] = new double[] { -Math.sinh(mu), 0 };
+		return poles;
+	}
+	
+	/*
+	 * An even order Chebyshev filter starts its passband at the bottom of a ripple,
+	 * so the passband stays between -rippleDb and 0dB
+	 */
+	private static double chebyshevGain(int order, double rippleDb)
+	{
+		if (order % 2 == 1)
+			return 1;
+		return Math.pow(10, -rippleDb / 20);
+	}
+	
+	private static double asinh(double x)
+	{
+		return Math.log(x + Math.sqrt(x * x + 1));
+	}
+}
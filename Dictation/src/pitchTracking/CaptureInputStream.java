@@ -0,0 +1,81 @@
+package pitchTracking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.sound.sampled.TargetDataLine;
+
+/*
+ * Reads audio bytes from a TargetDataLine and passes them on unchanged, while also
+ * decoding each frame to a mono sample and publishing it to a ring
+ * Wrapped in an AudioInputStream it lets the same captured audio be written to a
+ * file and analyzed live
+ */
+public class CaptureInputStream extends InputStream {
+	
+	public static final double MAX_READ_SECONDS = 0.01;	//reads return after at most this much audio, bounding latency
+	
+	private final TargetDataLine line;
+	private final SampleRingBuffer ring;
+	private final WavHeader format;
+	private final int maxReadBytes;
+	private final double[] mono;		//decoded samples of one read, reused
+	
+	public CaptureInputStream(TargetDataLine line, SampleRingBuffer ring)
+	{
+		this.line = line;
+		this.ring = ring;
+		this.format = WavHeader.forFormat(line.getFormat());
+		int frames = Math.max(1, (int) (format.sampleRate * MAX_READ_SECONDS));
+		this.maxReadBytes = frames * format.blockAlign;
+		this.mono = new double[frames];
+	}
+	
+	public int read() throws IOException
+	{
+		throw new IOException("Audio can only be read in whole frames");
+	}
+	
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		//the line only reads whole frames
+		len = Math.min(len, maxReadBytes);
+		len -= len % format.blockAlign;
+		if (len == 0)
+			return 0;
+		
+		int read = line.read(b, off, len);
+		if (read < 0)
+			return -1;
+		if (read == 0)
+			return line.isOpen() ? 0 : -1;	//a closed line has nothing more to give
+		
+		ByteBuffer buffer = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+		int frames = read / format.blockAlign;
+		int pos = off;
+		for (int i = 0; i < frames; i++)
+		{
+			double sum = 0;
+			for (int c = 0; c < format.channels; c++)
+			{
+				sum += format.sample(buffer, pos);
+				pos += format.bytesPerSample;
+			}
+			mono[i] = sum / format.channels;
+		}
+		ring.publish(mono, 0, frames);
+		return read;
+	}
+	
+	public int available()
+	{
+		return line.available();
+	}
+	
+	public void close()
+	{
+		line.close();
+	}
+}
@@ -0,0 +1,128 @@
+package pitchTracking;
+
+/*
+ * Finds the pitch of a block from its constant-Q transform, with bins a semitone
+ * apart on the equal-tempered notes, so low notes are told apart as well as high ones
+ * As in the harmonic product spectrum, each bin's magnitude is multiplied by those
+ * of the bins its harmonics land on (12 log2(h) semitones up); harmonics that would
+ * be above half the sample rate are left out for every bin alike
+ * A product of near-silent bins can still win on a pure tone, at a subharmonic whose
+ * harmonics include it, or at a neighbour of the note leaking into it, so only bins
+ * that are peaks, holding at least FUNDAMENTAL_SHARE of the strongest candidate's
+ * magnitude, are candidates themselves
+ * The pitch is interpolated between bins, in semitones
+ * Transforms on any thread share one kernel (see ConstantQTransform)
+ */
+public class ConstantQPitchDetector implements PitchDetector {
+	
+	public static final int BINS_PER_OCTAVE = 12;
+	public static final double FUNDAMENTAL_SHARE = 0.05;	//of the strongest candidate bin, for a bin to be a candidate
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final int lowestNote;	//MIDI note numbers of the candidate pitches
+	public final int highestNote;
+	public final int harmonics;		//magnitudes multiplied together for each bin, its own included
+	public final ConstantQTransform transform;	//one bin per note from lowestNote up to the last harmonic of highestNote
+	
+	public PeakInterpolation interpolation = PeakInterpolation.GAUSSIAN;	//how the pitch is placed between bins
+	
+	private final int[] steps;		//bins from a note up to each of its harmonics
+	
+	public ConstantQPitchDetector(float sampleRate, int blockSize, double minFrequency, double maxFrequency, int harmonics)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		
+		//a frequency that is a note, to within rounding, counts as that note
+		this.lowestNote = (int) Math.ceil(NoteSegmenter.midi(minFrequency) - 1e-6);
+		this.highestNote = (int) Math.floor(NoteSegmenter.midi(maxFrequency) + 1e-6);
+		
+		int nyquistNote = (int) Math.floor(NoteSegmenter.midi(sampleRate / 2));
+		int h = 1;
+		while (h < harmonics && highestNote + step(h + 1) < nyquistNote)
+			h++;
+		this.harmonics = h;
+		steps = new int[h];
+		for (int i = 0; i < h; i++)
+		{
+			steps[i] = step(i + 1);
+		}
+		
+		this.transform = new ConstantQTransform(sampleRate, blockSize, Spectrogram.hertz(lowestNote), BINS_PER_OCTAVE,
+				highestNote - lowestNote + steps[h - 1] + 1);
+	}
+	
+	/*
+	 * Returns the number of bins, rounded, from a note up to its harmonic h
+	 */
+	private static int step(int harmonic)
+	{
+		return (int) Math.round(BINS_PER_OCTAVE * Math.log(harmonic) / Math.log(2));
+	}
+	
+	public int blockSize()
+	{
+		return blockSize;
+	}
+	
+	/*
+	 * Transforms the block
+	 * Returns the frequency of the bin whose harmonics are strongest,
+	 * or NaN if the block is silent
+	 */
+	public double detect(double[] samples, int offset)
+	{
+		double[] magnitudes = transform.transform(samples, offset);
+		int candidates = highestNote - lowestNote + 1;
+		double strongest = 0;
+		for (int k = 0; k < candidates; k++)
+		{
+			strongest = Math.max(strongest, magnitudes[k]);
+		}
+		
+		int best = -1;
+		double bestProduct = 0;
+		for (int k = 0; k < candidates; k++)
+		{
+			if (magnitudes[k] < FUNDAMENTAL_SHARE * strongest
+					|| (k > 0 && magnitudes[k] < magnitudes[k - 1])
+					|| (k + 1 < magnitudes.length && magnitudes[k] < magnitudes[k + 1]))
+				continue;
+			double product = magnitudes[k];
+			for (int i = 1; i < steps.length; i++)
+			{
+				product *= magnitudes[k + steps[i]];
+			}
+			if (product > bestProduct)
+			{
+				bestProduct = product;
+				best = k;
+			}
+		}
+		if (best < 0)
+			return Double.NaN;
+		
+		double bin = best;
+		if (best > 0 && best + 1 < magnitudes.length)
+			bin += interpolation.offset(magnitudes[best - 1], magnitudes[best], magnitudes[best + 1]);
+		return transform.frequency(bin);
+	}
+	
+	public boolean usesPreviousBlock()
+	{
+		return false;
+	}
+	
+	public void reset()
+	{
+	}
+	
+	public PitchDetector copy()
+	{
+		ConstantQPitchDetector copy = new ConstantQPitchDetector(sampleRate, blockSize,
+				Spectrogram.hertz(lowestNote), Spectrogram.hertz(highestNote), harmonics);
+		copy.interpolation = interpolation;
+		return copy;
+	}
+}
@@ -0,0 +1,207 @@
+package pitchTracking;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+/*
+ * The constant-Q transform (Brown and Puckette, 1992): bins spaced evenly in pitch,
+ * binsPerOctave to the octave, each as wide as a fixed fraction of its frequency, so
+ * a low note gets as many bins per semitone as a high one
+ * Bin k is the inner product of the block with a windowed complex sinusoid at its
+ * frequency, Q cycles long; the same product is taken in the frequency domain,
+ * where each sinusoid's spectrum (its spectral kernel) is nonzero on only a few bins
+ * So a block costs one real FFT and a sparse matrix-vector product
+ * Kernels are only as long as the block, so below Q * sampleRate / blockSize
+ * (about 170Hz for a 4410 block at 44.1kHz) the bins stop narrowing with frequency
+ * The sparse kernel for each set of parameters is computed once and shared by every
+ * transform, on every thread; each transform keeps its own FFT plan
+ */
+public class ConstantQTransform {
+	
+	public static final double THRESHOLD = 0.01;	//kernel values below this share of their bin's largest are dropped
+	
+	private static final ConcurrentMap<String, Kernel> kernels = new ConcurrentHashMap<String, Kernel>();
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final double minFrequency;	//frequency of bin 0
+	public final int binsPerOctave;
+	public final int bins;
+	public final double q;				//frequency of a bin over its width
+	
+	private final Kernel kernel;
+	private final FFTPlan plan;
+	private final double[] magnitudes;	//of the last block transformed, one per bin
+	
+	public ConstantQTransform(float sampleRate, int blockSize, double minFrequency, int binsPerOctave, int bins)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.minFrequency = minFrequency;
+		this.binsPerOctave = binsPerOctave;
+		this.bins = bins;
+		this.q = 1 / (Math.pow(2, 1.0 / binsPerOctave) - 1);
+		this.kernel = kernel(sampleRate, blockSize, minFrequency, binsPerOctave, bins, q);
+		this.plan = new FFTPlan(blockSize);
+		this.magnitudes = new double[bins];
+	}
+	
+	/*
+	 * Returns the frequency of a (possibly fractional) bin
+	 */
+	public double frequency(double bin)
+	{
+		return minFrequency * Math.pow(2, bin / binsPerOctave);
+	}
+	
+	/*
+	 * Returns the number of samples bin k is measured over
+	 */
+	public int length(int k)
+	{
+		return Math.min(blockSize, (int) Math.ceil(q * sampleRate / frequency(k)));
+	}
+	
+	/*
+	 * Returns the number of kernel values kept, against bins * (blockSize / 2) for a dense kernel
+	 */
+	public int kernelSize()
+	{
+		return kernel.columns.length;
+	}
+	
+	/*
+	 * Takes the block of blockSize samples starting at offset (the samples themselves are left alone)
+	 * Performs FFT on it and multiplies the spectrum by the sparse kernel
+	 * Returns the magnitude of each bin, in an array that is reused for the next block
+	 */
+	public double[] transform(double[] samples, int offset)
+	{
+		double[] spectrum = plan.forward(samples, offset, null);
+		int[] starts = kernel.starts;
+		int[] columns = kernel.columns;
+		double[] re = kernel.re;
+		double[] im = kernel.im;
+		for (int k = 0; k < bins; k++)
+		{
+			double sumRe = 0;
+			double sumIm = 0;
+			for (int i = starts[k]; i < starts[k + 1]; i++)
+			{
+				//the spectrum times the conjugate of the kernel
+				int j = columns[i];
+				double xRe = spectrum[2 * j];
+				double xIm = spectrum[2 * j + 1];
+				sumRe += xRe * re[i] + xIm * im[i];
+				sumIm += xIm * re[i] - xRe * im[i];
+			}
+			magnitudes[k] = Math.sqrt(sumRe * sumRe + sumIm * sumIm) / blockSize;
+		}
+		return magnitudes;
+	}
+	
+	/*
+	 * Returns the magnitude of each bin of the last block transformed
+	 */
+	public double[] magnitudes()
+	{
+		return magnitudes;
+	}
+	
+	/*
+	 * The spectral kernels of all the bins, in compressed rows: bin k's values are
+	 * at indices starts[k] up to starts[k + 1], each with the FFT bin it multiplies
+	 * Never changed once built, so it can be shared between threads
+	 */
+	private static class Kernel {
+		
+		final int[] starts;
+		final int[] columns;
+		final double[] re;
+		final double[] im;
+		
+		Kernel(int[] starts, int[] columns, double[] re, double[] im)
+		{
+			this.starts = starts;
+			this.columns = columns;
+			this.re = re;
+			this.im = im;
+		}
+	}
+	
+	/*
+	 * Returns the sparse kernel for a set of parameters
+	 * The kernel is computed the first time those parameters are asked for
+	 */
+	private static Kernel kernel(float sampleRate, int blockSize, double minFrequency, int binsPerOctave, int bins, double q)
+	{
+		String key = sampleRate + "|" + blockSize + "|" + minFrequency + "|" + binsPerOctave + "|" + bins;
+		Kernel found = kernels.get(key);
+		if (found == null)
+		{
+			found = buildKernel(sampleRate, blockSize, minFrequency, binsPerOctave, bins, q);
+			Kernel existing = kernels.putIfAbsent(key, found);
+			if (existing != null)
+				found = existing;
+		}
+		return found;
+	}
+	
+	/*
+	 * Transforms each bin's windowed sinusoid, centered in the block, and keeps the
+	 * values of its spectrum above THRESHOLD
+	 * Only FFT bins 1 through blockSize / 2 - 1 are kept: a real block's other bins
+	 * mirror those, the sinusoids have next to nothing at DC or Nyquist, and skipping
+	 * those keeps the packed layout's special cases out of the product
+	 */
+	private static Kernel buildKernel(float sampleRate, int blockSize, double minFrequency, int binsPerOctave, int bins, double q)
+	{
+		int n = blockSize;
+		int last = n / 2 - 1;
+		DoubleFFT_1D fft = new DoubleFFT_1D(n);
+		double[] temporal = new double[2 * n];
+		int[] starts = new int[bins + 1];
+		int[] columns = new int[bins * last];
+		double[] re = new double[bins * last];
+		double[] im = new double[bins * last];
+		int size = 0;
+		for (int k = 0; k < bins; k++)
+		{
+			double frequency = minFrequency * Math.pow(2, (double) k / binsPerOctave);
+			int length = Math.min(n, (int) Math.ceil(q * sampleRate / frequency));
+			double[] window = WindowFunction.HAMMING.table(length);
+			int from = (n - length) / 2;
+			Arrays.fill(temporal, 0);
+			for (int i = 0; i < length; i++)
+			{
+				double angle = 2 * Math.PI * frequency * i / sampleRate;
+				temporal[2 * (from + i)] = window[i] / length * Math.cos(angle);
+				temporal[2 * (from + i) + 1] = window[i] / length * Math.sin(angle);
+			}
+			fft.complexForward(temporal);
+			
+			double largest = 0;
+			for (int j = 1; j <= last; j++)
+			{
+				largest = Math.max(largest, Math.hypot(temporal[2 * j], temporal[2 * j + 1]));
+			}
+			starts[k] = size;
+			for (int j = 1; j <= last; j++)
+			{
+				if (Math.hypot(temporal[2 * j], temporal[2 * j + 1]) >= THRESHOLD * largest)
+				{
+					columns[size] = j;
+					re[size] = temporal[2 * j];
+					im[size] = temporal[2 * j + 1];
+					size++;
+				}
+			}
+		}
+		starts[bins] = size;
+		return new Kernel(starts, Arrays.copyOf(columns, size),
+				Arrays.copyOf(re, size), Arrays.copyOf(im, size));
+	}
+}
@@ -0,0 +1,142 @@
+package pitchTracking;
+
+/*
+ * Decides whether a block is too quiet to have a pitch, from its RMS level
+ * The sum of squares of the block is kept as it slides: it is split into hop-long
+ * chunks, and each new block only adds the squares of the hop that arrived and drops
+ * the chunk that left, so a block costs one hop of work rather than a whole block
+ * Like a detector that uses the previous block, it must be given each block one hop
+ * after the last, from a reset() on; the sum is recomputed outright every RESYNC blocks
+ * so rounding can't build up
+ */
+public class EnergyGate {
+	
+	public static final double DEFAULT_THRESHOLD_DB = -48;	//dB below full scale; the bundled recordings' rooms sit at -53 to -60
+	public static final int RESYNC = 256;	//blocks between full recomputations
+	
+	public final int blockSize;
+	public final int hop;
+	public final double thresholdDb;
+	
+	private final double threshold;	//mean square at the threshold
+	private final double[] chunks;	//sums of squares of the block's whole hops, oldest at head
+	private final int tail;			//samples after the last whole hop
+	private double remainder;		//sum of squares of those
+	private double energy;			//sum of squares of the whole block
+	private int head;
+	private int sinceResync = RESYNC;	//blocks since the sum was last recomputed
+	
+	public EnergyGate(int blockSize, int hop, double thresholdDb)
+	{
+		this.blockSize = blockSize;
+		this.hop = hop;
+		this.thresholdDb = thresholdDb;
+		this.threshold = Math.pow(10, thresholdDb / 10);
+		this.chunks = new double[hop <= blockSize ? blockSize / hop : 0];
+		this.tail = hop <= blockSize ? blockSize % hop : blockSize;
+	}
+	
+	/*
+	 * Takes the block of blockSize samples starting at offset
+	 * Returns whether its RMS level is below the threshold
+	 */
+	public boolean silent(double[] samples, int offset)
+	{
+		if (sinceResync >= RESYNC || chunks.length == 0)
+		{
+			for (int j = 0; j < chunks.length; j++)
+			{
+				chunks[j] = squares(samples, offset + j * hop, hop);
+			}
+			remainder = squares(samples, offset + blockSize - tail, tail);
+			return resync();
+		}
+		return slide(squares(samples, offset + blockSize - hop, hop - tail), squares(samples, offset + blockSize - tail, tail));
+	}
+	
+	/*
+	 * The same for a block of single precision samples
+	 */
+	public boolean silent(float[] samples, int offset)
+	{
+		if (sinceResync >= RESYNC || chunks.length == 0)
+		{
+			for (int j = 0; j < chunks.length; j++)
+			{
+				chunks[j] = squares(samples, offset + j * hop, hop);
+			}
+			remainder = squares(samples, offset + blockSize - tail, tail);
+			return resync();
+		}
+		return slide(squares(samples, offset + blockSize - hop, hop - tail), squares(samples, offset + blockSize - tail, tail));
+	}
+	
+	/*
+	 * Returns the level of the last block in dB below full scale
+	 */
+	public double level()
+	{
+		return 10 * Math.log10(energy / blockSize);
+	}
+	
+	/*
+	 * Forgets the previous block, before a pass over new audio
+	 */
+	public void reset()
+	{
+		sinceResync = RESYNC;
+	}
+	
+	/*
+	 * Totals the freshly computed chunks
+	 */
+	private boolean resync()
+	{
+		energy = remainder;
+		for (int j = 0; j < chunks.length; j++)
+		{
+			energy += chunks[j];
+		}
+		head = 0;
+		sinceResync = 1;
+		return energy < threshold * blockSize;
+	}
+	
+	/*
+	 * Moves the block along by one hop
+	 * Takes the squares of the arrived samples that complete the old tail into a
+	 * whole hop, and of those that make the new tail
+	 */
+	private boolean slide(double completed, double newRemainder)
+	{
+		double chunk = remainder + completed;
+		energy += completed + newRemainder - chunks[head];
+		chunks[head] = chunk;
+		head = head + 1 == chunks.length ? 0 : head + 1;
+		remainder = newRemainder;
+		sinceResync++;
+		if (energy < 0)
+			energy = 0;	//rounding on a block of near silence
+		return energy < threshold * blockSize;
+	}
+	
+	private static double squares(double[] samples, int offset, int length)
+	{
+		double sum = 0;
+		for (int i = offset; i < offset + length; i++)
+		{
+			sum += samples[i] * samples[i];
+		}
+		return sum;
+	}
+	
+	private static double squares(float[] samples, int offset, int length)
+	{
+		double sum = 0;
+		for (int i = offset; i < offset + length; i++)
+		{
+			sum += (double) samples[i] * samples[i];
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,39 @@
+package pitchTracking;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+/*
+ * An FFT of one fixed size together with the scratch buffer it transforms in place
+ * Building a DoubleFFT_1D computes its twiddle tables, which is expensive for
+ * sizes that are not a power of two (like BLOCKSIZE), so a plan is built once
+ * and reused for every block of that size
+ * A plan is not thread-safe; each thread needs its own
+ */
+public class FFTPlan {
+	
+	public final int size;			//number of real input samples
+	public final DoubleFFT_1D fft;	//the transform itself
+	public final double[] buffer;	//scratch space the block is transformed in
+	
+	public FFTPlan(int size)
+	{
+		this.size = size;
+		this.fft = new DoubleFFT_1D(size);
+		this.buffer = new double[size];
+	}
+	
+	/*
+	 * Copies the block starting at offset in an array of samples into the scratch buffer
+	 * Windows the copy (the samples themselves are left alone; a null window means none)
+	 * Performs the real FFT on it
+	 * Returns the buffer, which holds the packed spectrum (see Spectrum)
+	 */
+	public double[] forward(double[] samples, int offset, WindowFunction window)
+	{
+		System.arraycopy(samples, offset, buffer, 0, size);
+		if (window != null)
+			window.apply(buffer, size);
+		fft.realForward(buffer);
+		return buffer;
+	}
+}
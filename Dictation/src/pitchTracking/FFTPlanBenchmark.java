@@ -0,0 +1,128 @@
+package pitchTracking;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+/*
+ * Measures the per-block cost of the sliding FFT as maxFrequency used to do it
+ * (a new plan and a full complex transform per block) against the cached real plan
+ * The two changes are also timed apart: a new plan against a cached one doing the same
+ * packed transform, and the full transform against the packed one on the same cached plan
+ * Runs every version over the same synthetic tone
+ * Usage: java pitchTracking.FFTPlanBenchmark [seconds of audio] [block size]
+ */
+public class FFTPlanBenchmark {
+	
+	public static final float SAMPLE_RATE = 44100;
+	public static final int ROUNDS = 5;	//timed rounds of each version, after one warmup round
+	
+	//the versions timed, by whether the plan is cached and whether the output is full or packed
+	private static final int NEW_FULL = 0;
+	private static final int NEW_PACKED = 1;
+	private static final int CACHED_FULL = 2;
+	private static final int CACHED_PACKED = 3;
+	
+	public static void main(String[] args)
+	{
+		int seconds = 60;
+		int blockSize = MultiplePitchRead.BLOCKSIZE;
+		if (args.length > 0)
+			seconds = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			blockSize = Integer.parseInt(args[1]);
+		
+		double[] samples = tone(440, (int) (seconds * SAMPLE_RATE));
+		int hop = blockSize / 5;
+		int blocks = (samples.length - blockSize) / hop + 1;
+		double[] block = new double[blockSize];
+		double[] full = new double[2 * blockSize];
+		FFTPlan plan = new FFTPlan(blockSize);
+		
+		System.out.println("Block size " + blockSize + ", hop " + hop + ", " + blocks + " blocks");
+		double sink = 0;
+		double[] nanos = new double[4];
+		for (int round = 0; round <= ROUNDS; round++)
+		{
+			for (int version = 0; version < nanos.length; version++)
+			{
+				long start = System.nanoTime();
+				for (int b = 0; b < blocks; b++)
+				{
+					System.arraycopy(samples, b * hop, block, 0, blockSize);
+					switch (version)
+					{
+					case NEW_FULL:
+						sink += freshPlanTransform(block);
+						break;
+					case NEW_PACKED:
+						sink += freshPlanPackedTransform(block);
+						break;
+					case CACHED_FULL:
+						System.arraycopy(block, 0, full, 0, blockSize);
+						plan.fft.realForwardFull(full);
+						sink += full[2];
+						break;
+					default:
+						sink += plan.forward(block, 0, null)[2];
+						break;
+					}
+				}
+				//the first round only warms up the JIT
+				if (round > 0)
+					nanos[version] += System.nanoTime() - start;
+			}
+		}
+		
+		double[] perBlock = new double[nanos.length];
+		for (int version = 0; version < nanos.length; version++)
+		{
+			perBlock[version] = nanos[version] / ROUNDS / blocks / 1000.0;
+		}
+		System.out.printf("New plan, full:        %10.2f us/block (as maxFrequency used to do it)%n", perBlock[NEW_FULL]);
+		System.out.printf("New plan, packed:      %10.2f us/block%n", perBlock[NEW_PACKED]);
+		System.out.printf("Cached plan, full:     %10.2f us/block%n", perBlock[CACHED_FULL]);
+		System.out.printf("Cached plan, packed:   %10.2f us/block (FFTPlan.forward)%n", perBlock[CACHED_PACKED]);
+		System.out.printf("Caching the plan:      %10.2fx (packed, new against cached)%n", perBlock[NEW_PACKED] / perBlock[CACHED_PACKED]);
+		System.out.printf("Packed output:         %10.2fx (cached plan, full against packed)%n", perBlock[CACHED_FULL] / perBlock[CACHED_PACKED]);
+		System.out.printf("Both:                  %10.2fx%n", perBlock[NEW_FULL] / perBlock[CACHED_PACKED]);
+		
+		//keeps the transforms from being optimized away
+		if (sink == 42)
+			System.out.println();
+	}
+	
+	/*
+	 * The transform as maxFrequency used to do it, building a new plan and buffer for every block
+	 */
+	private static double freshPlanTransform(double[] block)
+	{
+		DoubleFFT_1D fftDo = new DoubleFFT_1D(block.length);
+		double[] fft = new double[block.length * 2];
+		System.arraycopy(block, 0, fft, 0, block.length);
+		fftDo.realForwardFull(fft);
+		return fft[2];
+	}
+	
+	/*
+	 * The packed real transform FFTPlan does, but with a new plan and buffer for every block
+	 */
+	private static double freshPlanPackedTransform(double[] block)
+	{
+		DoubleFFT_1D fftDo = new DoubleFFT_1D(block.length);
+		double[] fft = block.clone();
+		fftDo.realForward(fft);
+		return fft[2];
+	}
+	
+	/*
+	 * Returns a sine wave of the given frequency (-1 to 1)
+	 */
+	private static double[] tone(double frequency, int length)
+	{
+		double[] samples = new double[length];
+		for (int i = 0; i < length; i++)
+		{
+			samples[i] = Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE);
+		}
+		return samples;
+	}
+}
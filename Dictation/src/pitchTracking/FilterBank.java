@@ -0,0 +1,56 @@
+package pitchTracking;
+
+/*
+ * Several filters run over the same samples in one pass, one output per band
+ * Each sample is read once and fed through every band while it is at hand, so
+ * a long recording is only traversed once however many bands there are
+ */
+public class FilterBank {
+	
+	private final BiquadCascade[] bands;
+	
+	public FilterBank(BiquadCascade[] bands)
+	{
+		this.bands = bands;
+	}
+	
+	public int bands()
+	{
+		return bands.length;
+	}
+	
+	/*
+	 * Filters length samples starting at offset into each band's output array,
+	 * writing from outputOffset on; state carries over to the next call
+	 */
+	public void process(double[] samples, int offset, int length, double[][] outputs, int outputOffset)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			double x = samples[offset + i];
+			for (int b = 0; b < bands.length; b++)
+			{
+				outputs[b][outputOffset + i] = bands[b].process(x);
+			}
+		}
+	}
+	
+	/*
+	 * Filters a whole array of samples through every band
+	 * Returns one new array per band
+	 */
+	public double[][] filter(double[] samples)
+	{
+		double[][] outputs = new double[bands.length][samples.length];
+		process(samples, 0, samples.length, outputs, 0);
+		return outputs;
+	}
+	
+	public void reset()
+	{
+		for (BiquadCascade band : bands)
+		{
+			band.reset();
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package pitchTracking;
+
+/*
+ * Filters the samples of one ring into another as they arrive
+ * Filtering happens in place in the chunk being passed along, so nothing is copied
+ * beyond reading and publishing
+ */
+public class FilterStage extends SampleConsumer {
+	
+	private final SampleFilter filter;
+	private final SampleRingBuffer output;
+	
+	public FilterStage(SampleRingBuffer input, SampleFilter filter, SampleRingBuffer output)
+	{
+		super(input, "FilterStage");
+		this.filter = filter;
+		this.output = output;
+	}
+	
+	protected void consume(double[] samples, int count)
+	{
+		filter.process(samples, 0, count);
+		output.publish(samples, 0, count);
+	}
+}
@@ -0,0 +1,60 @@
+package pitchTracking;
+
+/*
+ * Designs linear phase FIR filters by the window method
+ */
+public class FirDesign {
+	
+	private FirDesign()
+	{
+	}
+	
+	/*
+	 * Returns the taps of a low-pass filter: a sinc at the cutoff, tapered by a window
+	 * and scaled so the taps sum to one (unity gain at 0Hz)
+	 */
+	public static double[] lowPass(int taps, double cutoff, double sampleRate, WindowFunction window)
+	{
+		double[] h = new double[taps];
+		double fc = cutoff / sampleRate;	//cutoff in cycles per sample
+		double middle = (taps - 1) / 2.0;
+		double sum = 0;
+		for (int i = 0; i < taps; i++)
+		{
+			double t = i - middle;
+			double sinc = t == 0 ? 2 * fc : Math.sin(2 * Math.PI * fc * t) / (Math.PI * t);
+			
+			//a window over taps - 1 samples is symmetric across all the taps
+			h[i] = sinc * (taps > 1 ? window.value(i, taps - 1) : 1);
+			sum += h[i];
+		}
+		for (int i = 0; i < taps; i++)
+		{
+			h[i] /= sum;
+		}
+		return h;
+	}
+	
+	/*
+	 * Returns a Kaiser windowed low-pass filter that passes everything below passband
+	 * and attenuates everything above stopband by at least attenuationDb
+	 */
+	public static double[] kaiserLowPass(double passband, double stopband, double attenuationDb, double sampleRate)
+	{
+		double transition = 2 * Math.PI * (stopband - passband) / sampleRate;
+		int taps = (int) Math.ceil((attenuationDb - 8) / (2.285 * transition)) + 1;
+		return lowPass(taps, (passband + stopband) / 2, sampleRate, WindowFunction.kaiser(kaiserBeta(attenuationDb)));
+	}
+	
+	/*
+	 * Returns the Kaiser window shape that reaches a given stopband attenuation
+	 */
+	public static double kaiserBeta(double attenuationDb)
+	{
+		if (attenuationDb > 50)
+			return 0.1102 * (attenuationDb - 8.7);
+		if (attenuationDb >= 21)
+			return 0.5842 * Math.pow(attenuationDb - 21, 0.4) + 0.07886 * (attenuationDb - 21);
+		return 0;
+	}
+}
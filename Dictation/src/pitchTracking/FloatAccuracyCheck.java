@@ -0,0 +1,146 @@
+package pitchTracking;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Checks that the single precision pitch path finds the same pitches as the double one
+ * Runs both over synthetic tones and over every wav in a directory, unfiltered and
+ * through the Butterworth low-pass, and reports the largest difference in cents
+ * A block voiced on one path and not the other counts as a failure, and any failure
+ * makes it exit with status 1
+ * Usage: java pitchTracking.FloatAccuracyCheck [sound directory]
+ */
+public class FloatAccuracyCheck {
+	
+	public static final double TOLERANCE_CENTS = 1;
+	public static final float SAMPLE_RATE = 44100;
+	
+	private static double worst;	//largest difference seen, in cents
+	private static int failures;	//blocks beyond the tolerance, or voiced on only one path
+	private static int mismatches;	//blocks voiced on only one path
+	private static int blocks;		//blocks compared
+	
+	public static void main(String[] args)
+	{
+		File directory = new File(args.length > 0 ? args[0] : "../sounds");
+		MultiplePitchRead pitchReader = new MultiplePitchRead(SAMPLE_RATE, SAMPLE_RATE, "check");
+		
+		//tones across the range with a harmonic and some noise, two seconds each
+		Random random = new Random(1);
+		double frequency;
+		for (frequency = 55; frequency < pitchReader.MAX_FREQ; frequency *= 1.17)
+		{
+			double[] samples = new double[2 * (int) SAMPLE_RATE];
+			int i;
+			for (i = 0; i < samples.length; i++)
+			{
+				double t = i / SAMPLE_RATE;
+				samples[i] = 0.5 * Math.sin(2 * Math.PI * frequency * t) + 0.2 * Math.sin(4 * Math.PI * frequency * t)
+						+ 0.01 * random.nextGaussian();
+				samples[i] = Math.round(samples[i] * Short.MAX_VALUE) / (double) Short.MAX_VALUE;	//as 16-bit PCM
+			}
+			compare(String.format("%.1fHz tone", frequency), pitchReader, samples, toFloat(samples));
+		}
+		
+		File[] files = directory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.toLowerCase().endsWith(".wav");
+			}
+		});
+		if (files == null)
+			System.out.println("No sounds in " + directory + ", tones only");
+		else
+		{
+			Arrays.sort(files);
+			for (File file : files)
+			{
+				float sampleRate;
+				try {
+					WavReader reader = new WavReader(file);
+					sampleRate = reader.header.sampleRate;
+					reader.close();
+				} catch (IOException e) {
+					System.out.println(file.getName() + ": " + e.getMessage());
+					continue;
+				}
+				MultiplePitchRead fileReader = new MultiplePitchRead(sampleRate, sampleRate, file.getName());
+				double[] samples = fileReader.read(file);
+				float[] singles = fileReader.readFloat(file);
+				if (samples == null || singles == null)
+					continue;
+				compare(file.getName(), fileReader, samples, singles);
+			}
+		}
+		
+		System.out.println(String.format("%d blocks, largest difference %.4f cents, %d beyond %.1f cent, %d voiced on one path only",
+				blocks, worst, failures - mismatches, TOLERANCE_CENTS, mismatches));
+		System.out.println(failures == 0 ? "PASSED" : "FAILED");
+		if (failures > 0)
+			System.exit(1);
+	}
+	
+	/*
+	 * Compares the two paths on one sound, unfiltered and filtered
+	 */
+	private static void compare(String name, MultiplePitchRead pitchReader, double[] samples, float[] singles)
+	{
+		double unfiltered = compare(pitchReader.frequencyAnalysis(samples), pitchReader.frequencyAnalysis(singles));
+		BiquadCascade filter = BiquadCascade.butterworthLowPass(4, pitchReader.MAX_FREQ, pitchReader.sampleRate);
+		double[] filteredSamples = filter.filter(samples.clone());
+		filter.reset();
+		float[] filteredSingles = filter.filter(singles.clone());
+		double filtered = compare(pitchReader.frequencyAnalysis(filteredSamples), pitchReader.frequencyAnalysis(filteredSingles));
+		System.out.println(String.format("%-24s %8.4f cents unfiltered %8.4f cents filtered", name, unfiltered, filtered));
+	}
+	
+	/*
+	 * Returns the largest difference in cents between two pitch tracks, counting blocks
+	 * Blocks unvoiced on both paths are skipped; blocks voiced on only one are failures
+	 */
+	private static double compare(double[] expected, double[] actual)
+	{
+		double largest = 0;
+		if (expected.length != actual.length)
+		{
+			System.out.println(String.format("Tracks differ in length: %d against %d blocks", expected.length, actual.length));
+			failures++;
+		}
+		int i;
+		for (i = 0; i < Math.min(expected.length, actual.length); i++)
+		{
+			boolean voicedExpected = expected[i] > 0;
+			boolean voicedActual = actual[i] > 0;
+			if (voicedExpected != voicedActual)
+			{
+				blocks++;
+				mismatches++;
+				failures++;
+				continue;
+			}
+			if (!voicedExpected)
+				continue;
+			double cents = Math.abs(1200 * Math.log(actual[i] / expected[i]) / Math.log(2));
+			largest = Math.max(largest, cents);
+			blocks++;
+			if (cents > TOLERANCE_CENTS)
+				failures++;
+		}
+		worst = Math.max(worst, largest);
+		return largest;
+	}
+	
+	private static float[] toFloat(double[] samples)
+	{
+		float[] singles = new float[samples.length];
+		int i;
+		for (i = 0; i < samples.length; i++)
+		{
+			singles[i] = (float) samples[i];
+		}
+		return singles;
+	}
+}
@@ -0,0 +1,36 @@
+package pitchTracking;
+
+import edu.emory.mathcs.jtransforms.fft.FloatFFT_1D;
+
+/*
+ * The single precision twin of FFTPlan: a FloatFFT_1D of one fixed size with
+ * the scratch buffer it transforms in place
+ * A plan is not thread-safe; each thread needs its own
+ */
+public class FloatFFTPlan {
+	
+	public final int size;			//number of real input samples
+	public final FloatFFT_1D fft;	//the transform itself
+	public final float[] buffer;	//scratch space the block is transformed in
+	
+	public FloatFFTPlan(int size)
+	{
+		this.size = size;
+		this.fft = new FloatFFT_1D(size);
+		this.buffer = new float[size];
+	}
+	
+	/*
+	 * Copies the block starting at offset into the scratch buffer, windows the copy
+	 * (a null window means none) and performs the real FFT on it
+	 * Returns the buffer, which holds the packed spectrum (see Spectrum)
+	 */
+	public float[] forward(float[] samples, int offset, WindowFunction window)
+	{
+		System.arraycopy(samples, offset, buffer, 0, size);
+		if (window != null)
+			window.apply(buffer, size);
+		fft.realForward(buffer);
+		return buffer;
+	}
+}
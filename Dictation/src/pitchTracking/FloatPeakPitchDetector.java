@@ -0,0 +1,79 @@
+package pitchTracking;
+
+/*
+ * PeakPitchDetector for single precision samples, with a single precision FFT
+ * It finds the same peak the same way; there is no phase vocoder, which needs
+ * the previous block's phases in double precision
+ * Not a PitchDetector, since those take double[] blocks
+ */
+public class FloatPeakPitchDetector {
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final double maxFrequency;	//highest peak considered
+	
+	public WindowFunction window = WindowFunction.HAMMING;	//applied to each block before its FFT, null for none
+	public PeakInterpolation interpolation = PeakInterpolation.GAUSSIAN;	//how the peak is placed between bins
+	
+	private final FloatFFTPlan plan;
+	
+	public FloatPeakPitchDetector(float sampleRate, int blockSize, double maxFrequency)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.maxFrequency = maxFrequency;
+		this.plan = new FloatFFTPlan(blockSize);
+	}
+	
+	public int blockSize()
+	{
+		return blockSize;
+	}
+	
+	/*
+	 * Windows a copy of the block starting at offset and performs FFT on it
+	 * Returns the frequency of the strongest peak
+	 */
+	public double detect(float[] samples, int offset)
+	{
+		return Spectrum.frequency(peakBin(plan.forward(samples, offset, window)), sampleRate, blockSize);
+	}
+	
+	/*
+	 * Returns the packed spectrum of the block detect() last looked at,
+	 * valid until the next block
+	 */
+	public float[] lastSpectrum()
+	{
+		return plan.buffer;
+	}
+	
+	/*
+	 * Takes the packed spectrum of one block
+	 * Returns the position of its strongest bin below the maximum frequency,
+	 * interpolated between bins
+	 */
+	public double peakBin(float[] spectrum)
+	{
+		int n = blockSize;
+		int bins = Spectrum.bins(maxFrequency, sampleRate, n);
+		int maxBin = 0;
+		double maxPower = -1;
+		for (int k = 1; k < bins; k++)	//skip the DC bin
+		{
+			double power = Spectrum.power(spectrum, n, k);
+			if (maxPower < power)
+			{
+				maxPower = power;
+				maxBin = k;
+			}
+		}
+		if (maxBin == 0 || maxBin >= n / 2)
+			return maxBin;
+		
+		return maxBin + interpolation.offset(
+				Spectrum.magnitude(spectrum, n, maxBin - 1),
+				Math.sqrt(maxPower),
+				Spectrum.magnitude(spectrum, n, maxBin + 1));
+	}
+}
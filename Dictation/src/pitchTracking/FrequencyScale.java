@@ -0,0 +1,16 @@
+package pitchTracking;
+
+/*
+ * How a spectrogram lays out the frequencies of each frame
+ */
+public enum FrequencyScale {
+	
+	//one row per FFT bin, evenly spaced in Hz
+	LINEAR,
+	
+	//one row per semitone, so each octave gets the same height
+	LOG,
+	
+	//the semitone rows folded into the 12 pitch classes, C to B, whatever the octave
+	CHROMA
+}
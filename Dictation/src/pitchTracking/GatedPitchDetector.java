@@ -0,0 +1,65 @@
+package pitchTracking;
+
+/*
+ * Wraps a detector so that blocks too quiet to have a pitch never reach it
+ * Those come out as NaN without an FFT; the rest go to the wrapped detector
+ * The gate slides with the blocks (see EnergyGate), so this detector always
+ * uses the previous block
+ */
+public class GatedPitchDetector implements PitchDetector {
+	
+	public final PitchDetector detector;	//the detector the loud blocks go to
+	public final EnergyGate gate;
+	
+	private boolean wasSilent;		//whether the previous block was gated out
+	
+	public GatedPitchDetector(PitchDetector detector, int hop, double thresholdDb)
+	{
+		this.detector = detector;
+		this.gate = new EnergyGate(detector.blockSize(), hop, thresholdDb);
+	}
+	
+	/*
+	 * Returns the detector inside a gated one, or the detector itself if it isn't gated
+	 */
+	public static PitchDetector ungated(PitchDetector detector)
+	{
+		return detector instanceof GatedPitchDetector ? ((GatedPitchDetector) detector).detector : detector;
+	}
+	
+	public int blockSize()
+	{
+		return detector.blockSize();
+	}
+	
+	public double detect(double[] samples, int offset)
+	{
+		if (gate.silent(samples, offset))
+		{
+			//a detector that follows the blocks can't follow across the gap
+			if (!wasSilent && detector.usesPreviousBlock())
+				detector.reset();
+			wasSilent = true;
+			return Double.NaN;
+		}
+		wasSilent = false;
+		return detector.detect(samples, offset);
+	}
+	
+	public boolean usesPreviousBlock()
+	{
+		return true;
+	}
+	
+	public void reset()
+	{
+		gate.reset();
+		detector.reset();
+		wasSilent = false;
+	}
+	
+	public PitchDetector copy()
+	{
+		return new GatedPitchDetector(detector.copy(), gate.hop, gate.thresholdDb);
+	}
+}
@@ -0,0 +1,101 @@
+package pitchTracking;
+
+/*
+ * Measures the energy of one block at a fixed set of frequencies with a bank of
+ * Goertzel filters, one per frequency
+ * Each filter is a two-term recurrence over the windowed block, so a block costs
+ * O(blockSize) per frequency: for a few dozen known notes that is about the cost of
+ * one FFT, and it grows with the notes listed rather than with the FFT size
+ * The frequencies need not fall on FFT bins; the power at each is what the DFT of
+ * the windowed block would give at that (fractional) bin
+ * The coefficients and window are computed once and the filters run in place,
+ * so nothing is allocated per block
+ */
+public class GoertzelBank {
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final double[] frequencies;	//in Hz, one per filter
+	
+	public WindowFunction window = WindowFunction.HAMMING;	//applied to each block, null for none
+	
+	private final double[] coefficients;	//2cos(w) for each filter
+	private final double[] previous;		//the last two states of each filter's recurrence
+	private final double[] beforePrevious;
+	private final double[] powers;			//of the last block processed, one per filter
+	
+	public GoertzelBank(float sampleRate, int blockSize, double[] frequencies)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.frequencies = frequencies.clone();
+		int count = frequencies.length;
+		coefficients = new double[count];
+		for (int j = 0; j < count; j++)
+		{
+			coefficients[j] = 2 * Math.cos(2 * Math.PI * frequencies[j] / sampleRate);
+		}
+		previous = new double[count];
+		beforePrevious = new double[count];
+		powers = new double[count];
+	}
+	
+	/*
+	 * Returns a bank with one filter per equal-tempered note from lowest to highest,
+	 * given as MIDI note numbers
+	 */
+	public static GoertzelBank notes(float sampleRate, int blockSize, int lowest, int highest)
+	{
+		double[] frequencies = new double[highest - lowest + 1];
+		for (int j = 0; j < frequencies.length; j++)
+		{
+			frequencies[j] = Spectrogram.hertz(lowest + j);
+		}
+		return new GoertzelBank(sampleRate, blockSize, frequencies);
+	}
+	
+	/*
+	 * Takes the block of blockSize samples starting at offset (the samples themselves are left alone)
+	 * Runs every filter over it
+	 * Returns the power at each frequency, in an array that is reused for the next block
+	 */
+	public double[] process(double[] samples, int offset)
+	{
+		int count = coefficients.length;
+		double[] w = window != null ? window.table(blockSize) : null;
+		for (int j = 0; j < count; j++)
+		{
+			previous[j] = 0;
+			beforePrevious[j] = 0;
+		}
+		
+		//all the filters advance together, a sample at a time, so each sample is read once
+		//and the inner loop runs over the filters' arrays, which the JIT can vectorize
+		for (int i = 0; i < blockSize; i++)
+		{
+			double x = w != null ? samples[offset + i] * w[i] : samples[offset + i];
+			for (int j = 0; j < count; j++)
+			{
+				double state = x + coefficients[j] * previous[j] - beforePrevious[j];
+				beforePrevious[j] = previous[j];
+				previous[j] = state;
+			}
+		}
+		
+		for (int j = 0; j < count; j++)
+		{
+			double s1 = previous[j];
+			double s2 = beforePrevious[j];
+			powers[j] = s1 * s1 + s2 * s2 - coefficients[j] * s1 * s2;
+		}
+		return powers;
+	}
+	
+	/*
+	 * Returns the power at each frequency in the last block processed
+	 */
+	public double[] powers()
+	{
+		return powers;
+	}
+}
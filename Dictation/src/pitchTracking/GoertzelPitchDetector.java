@@ -0,0 +1,192 @@
+package pitchTracking;
+
+import java.util.Arrays;
+
+/*
+ * Takes the pitch of a block to be the equal-tempered note, out of a list of candidate
+ * notes, whose harmonics together are strongest
+ * For scoring against a known scale only those notes matter, so a bank of Goertzel
+ * filters measures just them (and the notes their harmonics land on) instead of an
+ * FFT measuring every bin; the fewer the notes, the smaller the bank
+ * Harmonic h of a note is 12 log2(h) semitones above it, so, as in the harmonic
+ * product spectrum, each note's magnitude is multiplied by those of the notes its
+ * harmonics are nearest to; harmonics that would be above half the sample rate
+ * are left out for every note alike
+ * The pitch comes out snapped to the note, unless interpolation is set, which places
+ * it between the strongest note and its neighbours when the bank has them
+ */
+public class GoertzelPitchDetector implements PitchDetector {
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final int[] notes;		//MIDI note numbers of the candidate pitches, ascending
+	public final int lowestNote;	//the first and last of them
+	public final int highestNote;
+	public final int harmonics;		//magnitudes multiplied together for each note, its own included
+	public final GoertzelBank bank;	//one filter per candidate note and per note a harmonic lands on
+	
+	public PeakInterpolation interpolation = PeakInterpolation.NONE;	//how the pitch is placed between notes
+	
+	private final int[] filters;		//for each candidate, the filters of its harmonics, its own first
+	private final int[] lower;			//for each candidate, the filter a semitone below, -1 if none
+	private final int[] upper;			//and a semitone above
+	private final double[] magnitudes;	//of every filter in the bank
+	
+	/*
+	 * Takes every note from minFrequency up to maxFrequency as a candidate
+	 */
+	public GoertzelPitchDetector(float sampleRate, int blockSize, double minFrequency, double maxFrequency, int harmonics)
+	{
+		//a frequency that is a note, to within rounding, counts as that note
+		this(sampleRate, blockSize, range((int) Math.ceil(NoteSegmenter.midi(minFrequency) - 1e-6),
+				(int) Math.floor(NoteSegmenter.midi(maxFrequency) + 1e-6)), harmonics);
+	}
+	
+	/*
+	 * Takes just the given notes (MIDI note numbers, in any order) as candidates
+	 */
+	public GoertzelPitchDetector(float sampleRate, int blockSize, int[] notes, int harmonics)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.notes = distinct(notes);
+		if (this.notes.length == 0)
+			throw new IllegalArgumentException("No notes to listen for");
+		this.lowestNote = this.notes[0];
+		this.highestNote = this.notes[this.notes.length - 1];
+		
+		int nyquistNote = (int) Math.floor(NoteSegmenter.midi(sampleRate / 2));
+		int h = 1;
+		while (h < harmonics && highestNote + step(h + 1) < nyquistNote)
+			h++;
+		this.harmonics = h;
+		
+		//every note the bank measures, each once
+		int count = this.notes.length;
+		int[] measured = new int[count * h];
+		for (int c = 0; c < count; c++)
+		{
+			for (int i = 0; i < h; i++)
+			{
+				measured[c * h + i] = this.notes[c] + step(i + 1);
+			}
+		}
+		measured = distinct(measured);
+		double[] frequencies = new double[measured.length];
+		for (int j = 0; j < measured.length; j++)
+		{
+			frequencies[j] = Spectrogram.hertz(measured[j]);
+		}
+		this.bank = new GoertzelBank(sampleRate, blockSize, frequencies);
+		this.magnitudes = new double[measured.length];
+		
+		filters = new int[count * h];
+		lower = new int[count];
+		upper = new int[count];
+		for (int c = 0; c < count; c++)
+		{
+			for (int i = 0; i < h; i++)
+			{
+				filters[c * h + i] = Arrays.binarySearch(measured, this.notes[c] + step(i + 1));
+			}
+			lower[c] = Math.max(-1, Arrays.binarySearch(measured, this.notes[c] - 1));
+			upper[c] = Math.max(-1, Arrays.binarySearch(measured, this.notes[c] + 1));
+		}
+	}
+	
+	/*
+	 * Returns the notes from lowest to highest
+	 */
+	private static int[] range(int lowest, int highest)
+	{
+		int[] notes = new int[Math.max(0, highest - lowest + 1)];
+		for (int j = 0; j < notes.length; j++)
+		{
+			notes[j] = lowest + j;
+		}
+		return notes;
+	}
+	
+	/*
+	 * Returns the notes sorted, each once
+	 */
+	private static int[] distinct(int[] notes)
+	{
+		int[] sorted = notes.clone();
+		Arrays.sort(sorted);
+		int n = 0;
+		for (int j = 0; j < sorted.length; j++)
+		{
+			if (n == 0 || sorted[j] != sorted[n - 1])
+				sorted[n++] = sorted[j];
+		}
+		return Arrays.copyOf(sorted, n);
+	}
+	
+	/*
+	 * Returns the number of semitones, rounded, from a note up to its harmonic h
+	 */
+	private static int step(int harmonic)
+	{
+		return (int) Math.round(12 * Math.log(harmonic) / Math.log(2));
+	}
+	
+	public int blockSize()
+	{
+		return blockSize;
+	}
+	
+	/*
+	 * Runs the bank over the block
+	 * Returns the frequency of the note whose harmonics are strongest,
+	 * or NaN if the block is silent
+	 */
+	public double detect(double[] samples, int offset)
+	{
+		double[] powers = bank.process(samples, offset);
+		for (int j = 0; j < powers.length; j++)
+		{
+			magnitudes[j] = Math.sqrt(powers[j]);
+		}
+		
+		int best = -1;
+		double bestProduct = 0;
+		for (int c = 0; c < notes.length; c++)
+		{
+			double product = 1;
+			for (int i = c * harmonics; i < (c + 1) * harmonics; i++)
+			{
+				product *= magnitudes[filters[i]];
+			}
+			if (product > bestProduct)
+			{
+				bestProduct = product;
+				best = c;
+			}
+		}
+		if (best < 0)
+			return Double.NaN;
+		
+		double note = notes[best];
+		if (lower[best] >= 0 && upper[best] >= 0)
+			note += interpolation.offset(magnitudes[lower[best]], magnitudes[filters[best * harmonics]], magnitudes[upper[best]]);
+		return Spectrogram.hertz(note);
+	}
+	
+	public boolean usesPreviousBlock()
+	{
+		return false;
+	}
+	
+	public void reset()
+	{
+	}
+	
+	public PitchDetector copy()
+	{
+		GoertzelPitchDetector copy = new GoertzelPitchDetector(sampleRate, blockSize, notes, harmonics);
+		copy.bank.window = bank.window;
+		copy.interpolation = interpolation;
+		return copy;
+	}
+}
@@ -0,0 +1,127 @@
+package pitchTracking;
+
+/*
+ * Finds the pitch with the harmonic product spectrum
+ * Multiplies the magnitude spectrum by copies of itself squeezed by 2, 3, ... so that
+ * the harmonics of a note all line up on its fundamental, which then outweighs any
+ * single strong harmonic
+ * The squeezed copies go into arrays allocated once, so a block costs one FFT and
+ * a few passes over the bins below the maximum frequency
+ */
+public class HarmonicProductSpectrumDetector extends SpectralPitchDetector {
+	
+	public final double minFrequency;	//lowest fundamental considered
+	public final double maxFrequency;	//highest fundamental considered
+	public final int harmonics;			//number of spectra multiplied together, the original included
+	
+	public PeakInterpolation interpolation = PeakInterpolation.GAUSSIAN;	//how the fundamental is placed between bins
+	
+	private final int minBin;
+	private final int bins;				//candidate fundamentals are bins minBin through bins - 1
+	private final double[] magnitudes;	//the magnitude spectrum up to the last harmonic needed
+	private final double[][] decimated;	//decimated[h - 2][k] is the spectrum squeezed by h, at bin k
+	private final double[] product;
+	
+	public HarmonicProductSpectrumDetector(float sampleRate, int blockSize, double minFrequency, double maxFrequency, int harmonics)
+	{
+		super(sampleRate, blockSize);
+		this.minFrequency = minFrequency;
+		this.maxFrequency = maxFrequency;
+		this.harmonics = harmonics;
+		
+		bins = Spectrum.bins(maxFrequency, sampleRate, blockSize);
+		minBin = Math.max(1, (int) Math.ceil(minFrequency * blockSize / sampleRate));
+		magnitudes = new double[blockSize / 2 + 1];
+		decimated = new double[harmonics - 1][bins];
+		product = new double[bins];
+	}
+	
+	/*
+	 * Returns the fundamental whose harmonics together are strongest,
+	 * or NaN if the block is silent
+	 */
+	public double detect(double[] samples, int offset)
+	{
+		double[] spectrum = spectrum(samples, offset);
+		int top = Math.min(magnitudes.length, bins * harmonics + harmonics);
+		Spectrum.magnitudes(spectrum, blockSize, magnitudes, top);
+		
+		for (int h = 2; h <= harmonics; h++)
+		{
+			decimate(h, decimated[h - 2], top);
+		}
+		
+		int best = -1;
+		double bestProduct = 0;
+		for (int k = minBin; k < bins; k++)
+		{
+			double p = magnitudes[k];
+			for (int h = 0; h < harmonics - 1; h++)
+			{
+				p *= decimated[h][k];
+			}
+			product[k] = p;
+			if (p > bestProduct)
+			{
+				bestProduct = p;
+				best = k;
+			}
+		}
+		if (best < 0)
+			return Double.NaN;
+		
+		double bin = best;
+		if (best + 1 < magnitudes.length)
+			bin += interpolation.offset(magnitudes[best - 1], magnitudes[best], magnitudes[best + 1]);
+		return Spectrum.frequency(bin, sampleRate, blockSize);
+	}
+	
+	/*
+	 * Fills dst with the magnitude spectrum squeezed by a factor of h
+	 * Bin k takes the largest magnitude within half a squeezed bin of h * k, so a
+	 * harmonic that falls between bins isn't lost
+	 */
+	private void decimate(int h, double[] dst, int top)
+	{
+		int half = h / 2;
+		for (int k = 0; k < bins; k++)
+		{
+			int center = h * k;
+			int from = Math.max(0, center - half);
+			int to = Math.min(top - 1, center + half);
+			double max = 0;
+			for (int i = from; i <= to; i++)
+			{
+				if (magnitudes[i] > max)
+					max = magnitudes[i];
+			}
+			dst[k] = max;
+		}
+	}
+	
+	/*
+	 * Returns the harmonic product of each candidate bin from the last block
+	 * Bins below the minimum frequency are not filled in
+	 */
+	public double[] product()
+	{
+		return product;
+	}
+	
+	public boolean usesPreviousBlock()
+	{
+		return false;
+	}
+	
+	public void reset()
+	{
+	}
+	
+	public PitchDetector copy()
+	{
+		HarmonicProductSpectrumDetector copy = new HarmonicProductSpectrumDetector(sampleRate, blockSize, minFrequency, maxFrequency, harmonics);
+		copy.window = window;
+		copy.interpolation = interpolation;
+		return copy;
+	}
+}
@@ -0,0 +1,82 @@
+package pitchTracking;
+
+import java.util.Arrays;
+
+/*
+ * Reduces samples from a ring to one peak level per hop, for graphing once capture ends
+ * Keeps at most MAX_LEVELS levels: when they fill up, each neighbouring pair is merged
+ * into one (the louder) and every level from then on covers twice as many hops
+ * So a recording of any length takes the same memory, allocated up front
+ */
+public class LevelGraphSink extends SampleConsumer {
+	
+	public static final int MAX_LEVELS = 4096;	//levels kept, an even number
+	
+	private final int hop;
+	private final double[] levels = new double[MAX_LEVELS];
+	private int count;			//levels recorded
+	private int span = 1;		//hops each level covers
+	private int inLevel;		//samples seen in the current level
+	private double peak;		//loudest sample in the current level
+	
+	public LevelGraphSink(SampleRingBuffer ring, int hop)
+	{
+		super(ring, "LevelGraphSink");
+		this.hop = hop;
+	}
+	
+	protected void consume(double[] samples, int n)
+	{
+		for (int i = 0; i < n; i++)
+		{
+			peak = Math.max(peak, Math.abs(samples[i]));
+			if (++inLevel == hop * span)
+			{
+				levels[count++] = peak;
+				inLevel = 0;
+				peak = 0;
+				if (count == MAX_LEVELS)
+					halve();
+			}
+		}
+	}
+	
+	/*
+	 * Merges each pair of levels into one, so they cover twice as many hops
+	 */
+	private void halve()
+	{
+		for (int j = 0; j < count / 2; j++)
+		{
+			levels[j] = Math.max(levels[2 * j], levels[2 * j + 1]);
+		}
+		count /= 2;
+		span *= 2;
+	}
+	
+	/*
+	 * Returns the number of hops each level covers
+	 * Only safe to call once the sink has stopped
+	 */
+	public int span()
+	{
+		return span;
+	}
+	
+	/*
+	 * Returns the peak level of every whole span of hops consumed so far
+	 * Only safe to call once the sink has stopped
+	 */
+	public double[] levels()
+	{
+		return Arrays.copyOf(levels, count);
+	}
+	
+	/*
+	 * Graphs the levels; only safe to call once the sink has stopped
+	 */
+	public void graph(MultiplePitchRead grapher, String filename)
+	{
+		grapher.graph(filename, levels(), "Level", span == 1 ? "Hop" : "Hop / " + span);
+	}
+}
@@ -0,0 +1,63 @@
+package pitchTracking;
+
+/*
+ * Tracks pitch live from samples arriving in a ring
+ * Analyzes each sliding block as soon as its last hop of samples has arrived
+ * and hands the pitch to a listener
+ * If the tracker falls so far behind that the ring overwrites samples it hadn't read,
+ * it starts a fresh block after the gap rather than join samples from either side
+ */
+public class LivePitchTracker extends SampleConsumer {
+	
+	private final PitchDetector detector;
+	private final int hop;
+	private final PitchListener listener;
+	
+	private final double[] block;	//the current sliding block
+	private int filled;				//samples in the block so far
+	private long position;			//position in the ring of the first sample of the block
+	private long lost;				//samples the reader had missed by the last chunk
+	
+	public LivePitchTracker(SampleRingBuffer ring, PitchDetector detector, int hop, PitchListener listener)
+	{
+		super(ring, "LivePitchTracker");
+		this.detector = detector;
+		this.hop = hop;
+		this.listener = listener;
+		this.block = new double[detector.blockSize()];
+		this.position = reader.sequence();
+		detector.reset();
+	}
+	
+	protected void consume(double[] samples, int count)
+	{
+		int size = block.length;
+		if (reader.lost() != lost)
+		{
+			//the chunk starts after a gap, so neither the block nor the detector's history carries on
+			lost = reader.lost();
+			filled = 0;
+			position = reader.sequence() - count;
+			detector.reset();
+		}
+		
+		int i = 0;
+		while (i < count)
+		{
+			int take = Math.min(count - i, size - filled);
+			System.arraycopy(samples, i, block, filled, take);
+			filled += take;
+			i += take;
+			
+			if (filled == size)
+			{
+				listener.pitchDetected(position, detector.detect(block, 0));
+				
+				//slide the block along by one hop
+				System.arraycopy(block, hop, block, 0, size - hop);
+				filled = size - hop;
+				position += hop;
+			}
+		}
+	}
+}
@@ -5,7 +5,7 @@ package pitchTracking;
 /*
  * Implements a low-pass filter for a discrete array of sound values
  */
-public class LowPassFilter {
+public class LowPassFilter implements SampleFilter {
 	
 	public double SAMPLERATE;
 	public final double DT; //the time between samples
@@ -17,6 +17,16 @@ public class LowPassFilter {
 										//smaller alpha means stronger low-pass filter
 	public double[] samples;
 	
+	private double previous;	//last output of process, carried over to the next block
+	
+	/*
+	 * A filter for streaming, fed block by block through process
+	 */
+	public LowPassFilter(double samplerate, double cutoff)
+	{
+		this(null, samplerate, cutoff);
+	}
+	
 	public LowPassFilter(double[] samples, double samplerate, double cutoff)
 	{
 		this.CUTOFF_FREQ = cutoff;
@@ -33,16 +43,10 @@ public class LowPassFilter {
 	 */
 	public double[] filter()
 	{
-		System.out.println("SAMPLERATE is " + SAMPLERATE);
-		System.out.println("Manual division gives " + 1.0/44100.0);
-		System.out.println("DT is " + DT);
-		System.out.println("CUTOFF_FREQ is " + CUTOFF_FREQ);
-		System.out.println("RC is " + RC);
-		System.out.println("ALPHA is " + ALPHA);
 		double[] filteredSamples = new double[samples.length];
 		filteredSamples[0] = samples[0];
 		
-		int finish = samples.length-1;
+		int finish = samples.length;
 		int i;
 		for (i = 1; i < finish; i++)
 		{
@@ -52,4 +56,27 @@ public class LowPassFilter {
 		samples = filteredSamples;
 		return samples;
 	}
+	
+	/*
+	 * Low-pass filters a block of a stream of samples in place
+	 * Picks up where the previous block left off, so a stream can be filtered
+	 * in blocks of any size
+	 */
+	public void process(double[] block, int offset, int length)
+	{
+		double y = previous;
+		int finish = offset + length;
+		int i;
+		for (i = offset; i < finish; i++)
+		{
+			y += ALPHA * (block[i] - y);
+			block[i] = y;
+		}
+		previous = y;
+	}
+	
+	public void reset()
+	{
+		previous = 0;
+	}
 }
\ No newline at end of file
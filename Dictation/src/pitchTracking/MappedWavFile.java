@@ -0,0 +1,124 @@
+package pitchTracking;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/*
+ * Random access to the samples of a PCM wav file through a memory map
+ * Nothing is copied onto the heap; reading a region only touches the pages it covers
+ * Reads don't move any shared position, so several threads can read at once
+ */
+public class MappedWavFile implements Closeable {
+	
+	public final WavHeader header;
+	
+	private final RandomAccessFile file;
+	private final MappedByteBuffer[] segments;	//a single map can't pass 2GB, so big files take several
+	private final long segmentFrames;			//frames in every segment but the last
+	
+	public MappedWavFile(File soundFile) throws IOException
+	{
+		file = new RandomAccessFile(soundFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			header = WavHeader.read(Channels.newInputStream(channel));
+			
+			//a truncated file only maps the frames it actually has
+			long length = Math.min(header.dataLength, channel.size() - header.dataOffset);
+			long frames = length / header.blockAlign;
+			
+			segmentFrames = Integer.MAX_VALUE / header.blockAlign;
+			int count = (int) ((frames + segmentFrames - 1) / segmentFrames);
+			segments = new MappedByteBuffer[count];
+			for (int i = 0; i < count; i++)
+			{
+				long first = i * segmentFrames;
+				long size = Math.min(segmentFrames, frames - first) * header.blockAlign;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, header.dataOffset + first * header.blockAlign, size);
+				segments[i].order(ByteOrder.LITTLE_ENDIAN);
+			}
+			header.dataLength = frames * header.blockAlign;
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+	
+	/*
+	 * Returns the number of frames (one sample per channel) in the file
+	 */
+	public long frames()
+	{
+		return header.frames();
+	}
+	
+	/*
+	 * Returns one sample (-1 to 1) of one channel
+	 */
+	public double getSample(int channel, long index)
+	{
+		if (channel < 0 || channel >= header.channels)
+			throw new IndexOutOfBoundsException("Channel " + channel + " of " + header.channels);
+		if (index < 0 || index >= frames())
+			throw new IndexOutOfBoundsException("Frame " + index + " of " + frames());
+		
+		int segment = (int) (index / segmentFrames);
+		int pos = (int) (index - segment * segmentFrames) * header.blockAlign + channel * header.bytesPerSample;
+		return header.sample(segments[segment], pos);
+	}
+	
+	/*
+	 * Fills dst with frames starting at offset, mixing the channels of each down to one sample
+	 * Returns the number of frames read, which is only short of dst.length at the end of the file
+	 */
+	public int readFrames(long offset, double[] dst)
+	{
+		return readFrames(offset, dst, 0, dst.length);
+	}
+	
+	/*
+	 * Reads length mono frames starting at offset into dst starting at dstOffset
+	 * Returns the number of frames read
+	 */
+	public int readFrames(long offset, double[] dst, int dstOffset, int length)
+	{
+		if (offset < 0)
+			throw new IndexOutOfBoundsException("Frame " + offset);
+		int count = (int) Math.max(0, Math.min(length, frames() - offset));
+		int channels = header.channels;
+		
+		int i = 0;
+		while (i < count)
+		{
+			long frame = offset + i;
+			int segment = (int) (frame / segmentFrames);
+			MappedByteBuffer buffer = segments[segment];
+			int pos = (int) (frame - segment * segmentFrames) * header.blockAlign;
+			
+			//read up to the end of this segment without recomputing the position
+			int stop = (int) Math.min(count, (segment + 1) * segmentFrames - offset);
+			for (; i < stop; i++)
+			{
+				double sum = 0;
+				for (int c = 0; c < channels; c++)
+				{
+					sum += header.sample(buffer, pos);
+					pos += header.bytesPerSample;
+				}
+				dst[dstOffset + i] = sum / channels;
+			}
+		}
+		return count;
+	}
+	
+	public void close() throws IOException
+	{
+		file.close();
+	}
+}
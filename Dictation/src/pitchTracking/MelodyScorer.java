@@ -0,0 +1,389 @@
+package pitchTracking;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeSet;
+
+/*
+ * Scores a take of a melody against a reference by how closely their pitches match
+ * The take may be faster or slower in places, so the two pitch sequences are first
+ * aligned by dynamic time warping (DTW): the cheapest path through the grid of
+ * reference frames against take frames, where each cell costs the pitch difference
+ * Only cells within a band around the diagonal are considered (the Sakoe-Chiba band),
+ * and only two rows of them are kept, so time and memory grow with the band rather
+ * than with the product of the two lengths
+ * Pitches are MIDI note numbers (see NoteSegmenter.midi), NaN where there is none;
+ * a sequence of notes works the same as a sequence of frames
+ * A take can also be several pitches per frame (PitchFrames, for audio with more than
+ * one note at once); a reference pitch then matches the nearest of them
+ */
+public class MelodyScorer {
+	
+	public static final double MAX_COST = 2;	//semitones; any larger difference, or voiced against unvoiced, costs this
+	
+	public static final int DEFAULT_BAND = 100;	//two seconds of blocks, BLOCK_INC apart at 44.1kHz
+	
+	public final int band;	//frames either side of the diagonal
+	
+	public MelodyScorer(int band)
+	{
+		this.band = band;
+	}
+	
+	/*
+	 * Takes an array of frequencies in Hz, with NaN or 0 where there is no pitch
+	 * Returns the MIDI pitches, with NaN where there is no pitch
+	 */
+	public static double[] midi(double[] frequencies)
+	{
+		double[] pitches = new double[frequencies.length];
+		for (int i = 0; i < frequencies.length; i++)
+		{
+			pitches[i] = frequencies[i] > 0 ? NoteSegmenter.midi(frequencies[i]) : Double.NaN;
+		}
+		return pitches;
+	}
+	
+	/*
+	 * Takes the peaks of each frame
+	 * Returns their MIDI pitches, frames.maxPeaks to a frame, with NaN in unused slots
+	 */
+	public static double[] midi(PitchFrames frames)
+	{
+		double[] pitches = new double[frames.frames * frames.maxPeaks];
+		for (int f = 0; f < frames.frames; f++)
+		{
+			for (int i = 0; i < frames.maxPeaks; i++)
+			{
+				pitches[f * frames.maxPeaks + i] = i < frames.count(f) && frames.frequency(f, i) > 0
+						? NoteSegmenter.midi(frames.frequency(f, i)) : Double.NaN;
+			}
+		}
+		return pitches;
+	}
+	
+	/*
+	 * Returns the cost of matching one pitch with another
+	 */
+	public static double cost(double a, double b)
+	{
+		boolean voicedA = !Double.isNaN(a);
+		boolean voicedB = !Double.isNaN(b);
+		if (voicedA != voicedB)
+			return MAX_COST;
+		if (!voicedA)
+			return 0;
+		return Math.min(Math.abs(a - b), MAX_COST);
+	}
+	
+	/*
+	 * Returns the cost of matching a pitch with the nearest of count candidates starting
+	 * at from, which count as unvoiced if none of them is voiced
+	 */
+	public static double cost(double a, double[] candidates, int from, int count)
+	{
+		double best = Double.POSITIVE_INFINITY;
+		for (int i = from; i < from + count; i++)
+		{
+			if (!Double.isNaN(candidates[i]))
+				best = Math.min(best, cost(a, candidates[i]));
+		}
+		return best == Double.POSITIVE_INFINITY ? cost(a, Double.NaN) : best;
+	}
+	
+	/*
+	 * Aligns the take with the reference
+	 * Returns the mean cost per step of the cheapest path, from 0 (identical)
+	 * to MAX_COST, or NaN if either is empty
+	 */
+	public double distance(double[] reference, double[] take)
+	{
+		return distance(reference, take, 1);
+	}
+	
+	/*
+	 * The same for a take with several pitches per frame, matching each reference
+	 * pitch with the nearest of them
+	 */
+	public double distance(double[] reference, PitchFrames take)
+	{
+		return distance(reference, midi(take), take.maxPeaks);
+	}
+	
+	/*
+	 * Aligns the take, peaks pitches to a frame, with the reference
+	 */
+	private double distance(double[] reference, double[] take, int peaks)
+	{
+		int n = reference.length;
+		int m = take.length / peaks;
+		if (n == 0 || m == 0)
+			return Double.NaN;
+		
+		//a band narrower than the slope of the diagonal would leave gaps between rows
+		int width = Math.max(band, (m + n - 1) / n + 1);
+		int size = 2 * width + 1;
+		
+		//row i covers columns from[i] to from[i] + size - 1; cells outside the take are infinite
+		double[] previous = new double[size];
+		double[] current = new double[size];
+		int[] previousSteps = new int[size];	//length of each cell's path, to take the mean
+		int[] currentSteps = new int[size];
+		int previousFrom = 0;
+		
+		int i;
+		for (i = 0; i < n; i++)
+		{
+			int from = (int) ((long) i * (m - 1) / Math.max(1, n - 1)) - width;
+			int j;
+			for (j = 0; j < size; j++)
+			{
+				int column = from + j;
+				if (column < 0 || column >= m)
+				{
+					current[j] = Double.POSITIVE_INFINITY;
+					continue;
+				}
+				double best;
+				int steps;
+				if (i == 0 && column == 0)
+				{
+					best = 0;
+					steps = 0;
+				}
+				else
+				{
+					//from the left in this row
+					best = j > 0 ? current[j - 1] : Double.POSITIVE_INFINITY;
+					steps = j > 0 ? currentSteps[j - 1] : 0;
+					if (i > 0)
+					{
+						//from above and from the diagonal in the previous row
+						int above = column - previousFrom;
+						if (above >= 0 && above < size && previous[above] < best)
+						{
+							best = previous[above];
+							steps = previousSteps[above];
+						}
+						if (above - 1 >= 0 && above - 1 < size && previous[above - 1] <= best)
+						{
+							best = previous[above - 1];
+							steps = previousSteps[above - 1];
+						}
+					}
+				}
+				current[j] = best + (peaks == 1 ? cost(reference[i], take[column]) : cost(reference[i], take, column * peaks, peaks));
+				currentSteps[j] = steps + 1;
+			}
+			
+			double[] rows = previous;
+			previous = current;
+			current = rows;
+			int[] stepRows = previousSteps;
+			previousSteps = currentSteps;
+			currentSteps = stepRows;
+			previousFrom = from;
+		}
+		
+		//the path ends at the last frame of both
+		int last = m - 1 - previousFrom;
+		return previous[last] / previousSteps[last];
+	}
+	
+	/*
+	 * Returns a score from 0 to 100 for how well the take matches the reference
+	 */
+	public double score(double[] reference, double[] take)
+	{
+		return score(distance(reference, take));
+	}
+	
+	/*
+	 * The same for a take with several pitches per frame
+	 */
+	public double score(double[] reference, PitchFrames take)
+	{
+		return score(distance(reference, take));
+	}
+	
+	private static double score(double distance)
+	{
+		if (Double.isNaN(distance))
+			return 0;
+		return 100 * (1 - distance / MAX_COST);
+	}
+	
+	/*
+	 * Returns the MIDI pitch of every block of a sound file, using the named detector
+	 * Throws IllegalArgumentException if there is no detector by that name
+	 */
+	public static double[] pitches(File soundFile, String detectorName) throws IOException
+	{
+		WavReader reader = new WavReader(soundFile);
+		try {
+			float sampleRate = reader.header.sampleRate;
+			MultiplePitchRead pitchReader = new MultiplePitchRead(sampleRate, sampleRate, soundFile.getName());
+			pitchReader.detector = pitchReader.newDetector(detectorName);
+			if (pitchReader.detector == null)
+				throw new IllegalArgumentException("Unknown detector " + detectorName);
+			return midi(pitchReader.frequencyAnalysis(reader));
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/*
+	 * Returns the MIDI pitch of every block of a sound file, listening for just the
+	 * given MIDI notes with a goertzel detector
+	 * Throws IllegalArgumentException if there are no notes
+	 */
+	public static double[] pitches(File soundFile, int[] notes) throws IOException
+	{
+		WavReader reader = new WavReader(soundFile);
+		try {
+			float sampleRate = reader.header.sampleRate;
+			MultiplePitchRead pitchReader = new MultiplePitchRead(sampleRate, sampleRate, soundFile.getName());
+			pitchReader.detector = pitchReader.newDetector(notes);
+			return midi(pitchReader.frequencyAnalysis(reader));
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/*
+	 * Takes MIDI pitches, NaN where there is none
+	 * Returns the notes they round to, each once, lowest first
+	 */
+	public static int[] notes(double[] pitches)
+	{
+		TreeSet<Integer> found = new TreeSet<Integer>();
+		for (double pitch : pitches)
+		{
+			if (!Double.isNaN(pitch))
+				found.add((int) Math.round(pitch));
+		}
+		int[] notes = new int[found.size()];
+		int i = 0;
+		for (int note : found)
+		{
+			notes[i++] = note;
+		}
+		return notes;
+	}
+	
+	/*
+	 * Returns the strongest few pitches of every block of a sound file
+	 */
+	public static PitchFrames peaks(File soundFile, int maxPeaks) throws IOException
+	{
+		WavReader reader = new WavReader(soundFile);
+		float sampleRate;
+		try {
+			sampleRate = reader.header.sampleRate;
+		} finally {
+			reader.close();
+		}
+		MultiplePitchRead pitchReader = new MultiplePitchRead(sampleRate, sampleRate, soundFile.getName());
+		return pitchReader.multiPitchAnalysis(pitchReader.getSampleData(soundFile), maxPeaks);
+	}
+	
+	public static void main(String[] args) throws IOException
+	{
+		int arg = 0;
+		int peaks = 0;
+		boolean notes = false;
+		while (arg < args.length && args[arg].startsWith("-"))
+		{
+			if (args[arg].equals("-peaks") && !notes)
+			{
+				peaks = parseCount(args, arg + 1, 1, Byte.MAX_VALUE);
+				arg += 2;
+			}
+			else if (args[arg].equals("-notes") && peaks == 0)
+			{
+				notes = true;
+				arg++;
+			}
+			else
+				printUsageAndExit();
+		}
+		if (args.length - arg < 2 || args.length - arg > 4)
+			printUsageAndExit();
+		String detectorName = args.length > arg + 2 ? args[arg + 2] : "hps";
+		int band = args.length > arg + 3 ? parseCount(args, arg + 3, 0, Integer.MAX_VALUE) : DEFAULT_BAND;
+		if (new MultiplePitchRead(44100, 44100, "score").newDetector(detectorName) == null)
+		{
+			System.out.println("Unknown detector " + detectorName);
+			printUsageAndExit();
+		}
+		
+		MelodyScorer scorer = new MelodyScorer(band);
+		double[] reference;
+		long start;
+		double score;
+		int frames;
+		if (peaks > 0)
+		{
+			//the reference is the strongest peak of each block, found the same way as the take's
+			reference = midi(peaks(new File(args[arg]), peaks).strongest());
+			PitchFrames take = peaks(new File(args[arg + 1]), peaks);
+			frames = take.frames;
+			start = System.nanoTime();
+			score = scorer.score(reference, take);
+		}
+		else
+		{
+			reference = pitches(new File(args[arg]), detectorName);
+			double[] take;
+			if (notes)
+			{
+				//the take is only listened to for the notes the reference sings
+				int[] referenceNotes = notes(reference);
+				if (referenceNotes.length == 0)
+				{
+					System.out.println("The reference has no pitches to listen for");
+					System.exit(1);
+				}
+				take = pitches(new File(args[arg + 1]), referenceNotes);
+			}
+			else
+				take = pitches(new File(args[arg + 1]), detectorName);
+			frames = take.length;
+			start = System.nanoTime();
+			score = scorer.score(reference, take);
+		}
+		double millis = (System.nanoTime() - start) / 1e6;
+		System.out.println(String.format("Score %.1f (%d against %d frames, %.2f ms)", score, reference.length, frames, millis));
+	}
+	
+	/*
+	 * Returns the whole number at args[index], or prints the usage and exits
+	 * if it is missing, isn't a number or is outside minimum to maximum
+	 */
+	private static int parseCount(String[] args, int index, int minimum, int maximum)
+	{
+		int value = 0;
+		if (index >= args.length)
+			printUsageAndExit();
+		try {
+			value = Integer.parseInt(args[index]);
+		} catch (NumberFormatException e) {
+			printUsageAndExit();
+		}
+		if (value < minimum || value > maximum)
+			printUsageAndExit();
+		return value;
+	}
+	
+	private static void printUsageAndExit()
+	{
+		System.out.println("MelodyScorer: usage:");
+		System.out.println("\tjava MelodyScorer [-peaks count | -notes] <reference soundfile> <take soundfile> [peak|sliding|yin|hps|goertzel|cqt] [band frames]");
+		System.out.println("\twith -peaks, the reference is the strongest pitch of each block and the take is scored");
+		System.out.println("\tby the nearest of its strongest few pitches in each block, and the detector is not used");
+		System.out.println("\twith -notes, the take is tracked by a goertzel detector listening for just the notes");
+		System.out.println("\tof the reference, found by the detector");
+		System.out.println("\tcount is 1 to " + Byte.MAX_VALUE + ", band frames 0 or more");
+		System.exit(1);
+	}
+}
@@ -0,0 +1,74 @@
+package pitchTracking;
+
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * Checks that a recording scored against itself gets 100 in every mode: with each
+ * detector, and with the take's strongest one, two and three pitches per block
+ * Blocks the gate marks silent must be silent in both the reference and the take,
+ * or they cost the score; as scoring a file's peaks against its own strongest peaks
+ * would hide that, the blocks with no peaks are also checked against the detectors'
+ * Exits with status 1 if any score falls short
+ * Usage: java pitchTracking.MelodyScorerCheck [soundfile ...]
+ */
+public class MelodyScorerCheck {
+	
+	public static final int MAX_PEAKS = 3;
+	public static final double TOLERANCE = 1e-9;	//points below 100 still counted as 100
+	
+	public static void main(String[] args) throws IOException
+	{
+		String[] names = args.length > 0 ? args : new String[] { "../sounds/cScale.wav", "../sounds/chromatic.wav", "../sounds/twoTones.wav" };
+		MelodyScorer scorer = new MelodyScorer(MelodyScorer.DEFAULT_BAND);
+		int failures = 0;
+		for (String name : names)
+		{
+			File file = new File(name);
+			double[] pitches = null;
+			for (String detectorName : MultiplePitchRead.DETECTORS)
+			{
+				pitches = MelodyScorer.pitches(file, detectorName);
+				failures += report(file, detectorName, pitches.length, scorer.score(pitches, pitches));
+			}
+			for (int peaks = 1; peaks <= MAX_PEAKS; peaks++)
+			{
+				PitchFrames frames = MelodyScorer.peaks(file, peaks);
+				double[] reference = MelodyScorer.midi(frames.strongest());
+				failures += report(file, "-peaks " + peaks, frames.frames, scorer.score(reference, frames));
+				
+				//every detector is gated alike, so the last one's silent blocks stand for them all
+				int gated = 0;
+				int f;
+				for (f = 0; f < Math.min(frames.frames, pitches.length); f++)
+				{
+					if (Double.isNaN(pitches[f]) && frames.count(f) > 0)
+						gated++;
+				}
+				if (gated > 0 || frames.frames != pitches.length)
+				{
+					System.out.println(String.format("%-24s %-10s %5d silent blocks have peaks, %d frames against %d  FAILED",
+							file.getName(), "-peaks " + peaks, gated, frames.frames, pitches.length));
+					failures++;
+				}
+			}
+		}
+		if (failures > 0)
+		{
+			System.out.println(failures + " FAILED");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+	
+	/*
+	 * Prints one score
+	 * Returns 1 if it falls short of 100, 0 if not
+	 */
+	private static int report(File file, String mode, int frames, double score)
+	{
+		boolean failed = !(score >= 100 - TOLERANCE);
+		System.out.println(String.format("%-24s %-10s %5d frames  score %6.2f%s", file.getName(), mode, frames, score, failed ? "  FAILED" : ""));
+		return failed ? 1 : 0;
+	}
+}
@@ -0,0 +1,129 @@
+package pitchTracking;
+
+/*
+ * Finds several simultaneous pitches in a block, for chords
+ * Takes the strongest spectral peaks in turn, skipping any that sit on a harmonic
+ * of a peak already taken and are clearly weaker than it
+ * All of its buffers are allocated once, so extracting a frame allocates nothing
+ */
+public class MultiPitchExtractor {
+	
+	public static final double HARMONIC_TOLERANCE = 0.03;	//how far from a whole multiple still counts as a harmonic
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final double minFrequency;
+	public final double maxFrequency;
+	
+	public WindowFunction window = WindowFunction.HAMMING;
+	public PeakInterpolation interpolation = PeakInterpolation.GAUSSIAN;
+	public double minLevel = 0.05;		//peaks weaker than this fraction of the strongest are ignored
+	public double harmonicLevel = 0.5;	//a harmonic is only a note of its own if it is at least this strong relative to its fundamental
+	
+	private final FFTPlan plan;
+	private final int minBin;
+	private final int bins;
+	private final double[] magnitudes;
+	private final int[] candidates;		//bins of the local maxima in the spectrum
+	
+	public MultiPitchExtractor(float sampleRate, int blockSize, double minFrequency, double maxFrequency)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.minFrequency = minFrequency;
+		this.maxFrequency = maxFrequency;
+		
+		plan = new FFTPlan(blockSize);
+		minBin = Math.max(1, (int) Math.ceil(minFrequency * blockSize / sampleRate));
+		bins = Spectrum.bins(maxFrequency, sampleRate, blockSize);
+		magnitudes = new double[Math.min(bins + 1, blockSize / 2 + 1)];
+		candidates = new int[bins / 2 + 1];
+	}
+	
+	/*
+	 * Finds the peaks of the block starting at offset and adds them to frames as a new frame
+	 * Returns the number of peaks found
+	 */
+	public int extract(double[] samples, int offset, PitchFrames frames)
+	{
+		int frame = frames.addFrame();
+		int base = frame * frames.maxPeaks;
+		int count = extract(samples, offset, frames.frequencies, frames.magnitudes, base, frames.maxPeaks);
+		for (int i = count; i < frames.maxPeaks; i++)
+		{
+			frames.frequencies[base + i] = Float.NaN;
+			frames.magnitudes[base + i] = 0;
+		}
+		frames.counts[frame] = (byte) count;
+		return count;
+	}
+	
+	/*
+	 * Finds up to maxPeaks peaks of the block starting at offset, strongest first
+	 * Writes their frequencies and magnitudes into the arrays from index dst on
+	 * Returns the number of peaks found
+	 */
+	public int extract(double[] samples, int offset, float[] frequencies, float[] peakMagnitudes, int dst, int maxPeaks)
+	{
+		double[] spectrum = plan.forward(samples, offset, window);
+		Spectrum.magnitudes(spectrum, blockSize, magnitudes, magnitudes.length);
+		
+		//collect the local maxima and the strongest of them
+		int candidateCount = 0;
+		double strongest = 0;
+		for (int k = minBin; k < bins && k + 1 < magnitudes.length; k++)
+		{
+			double m = magnitudes[k];
+			if (m > magnitudes[k - 1] && m >= magnitudes[k + 1])
+			{
+				candidates[candidateCount++] = k;
+				strongest = Math.max(strongest, m);
+			}
+		}
+		double floor = strongest * minLevel;
+		
+		int found = 0;
+		while (found < maxPeaks)
+		{
+			//take the strongest candidate left
+			int best = -1;
+			for (int c = 0; c < candidateCount; c++)
+			{
+				int k = candidates[c];
+				if (k >= 0 && magnitudes[k] > floor && (best < 0 || magnitudes[k] > magnitudes[candidates[best]]))
+					best = c;
+			}
+			if (best < 0)
+				break;
+			int k = candidates[best];
+			candidates[best] = -1;
+			
+			double bin = k + interpolation.offset(magnitudes[k - 1], magnitudes[k], magnitudes[k + 1]);
+			double frequency = Spectrum.frequency(bin, sampleRate, blockSize);
+			if (!isHarmonic(frequency, magnitudes[k], frequencies, peakMagnitudes, dst, found))
+			{
+				frequencies[dst + found] = (float) frequency;
+				peakMagnitudes[dst + found] = (float) magnitudes[k];
+				found++;
+			}
+		}
+		return found;
+	}
+	
+	/*
+	 * Returns whether a peak sits on a whole multiple of one of the peaks already found
+	 * and is too weak to be taken for a note of its own
+	 */
+	private boolean isHarmonic(double frequency, double magnitude, float[] frequencies, float[] peakMagnitudes, int dst, int found)
+	{
+		for (int i = 0; i < found; i++)
+		{
+			double ratio = frequency / frequencies[dst + i];
+			double multiple = Math.round(ratio);
+			if (multiple >= 2 && Math.abs(ratio - multiple) < HARMONIC_TOLERANCE * multiple
+					&& magnitude < harmonicLevel * peakMagnitudes[dst + i])
+				return true;
+		}
+		return false;
+	}
+}
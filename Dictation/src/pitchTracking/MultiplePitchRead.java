@@ -1,8 +1,11 @@
 package pitchTracking;
 
+import java.awt.Color;
 import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-import edu.emory.mathcs.jtransforms.fft.*;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
@@ -10,9 +13,17 @@ import javax.sound.sampled.AudioSystem;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.ChartFactory;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.SymbolAxis;
+import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.LookupPaintScale;
+import org.jfree.chart.renderer.xy.XYBlockRenderer;
+import org.jfree.data.xy.DefaultXYZDataset;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
+import org.jfree.ui.RectangleAnchor;
 
 public class MultiplePitchRead {
 	
@@ -22,14 +33,119 @@ public class MultiplePitchRead {
 	public String graphName;	//name for the graph 
 
     public final double MAX_16_BIT = Short.MAX_VALUE;     // 32,767
-    public final float MAX_FREQ = 1000; //highest note to be tolerated
+    public static final float MAX_FREQ = 1000; //highest note to be tolerated
+    public static final double MIN_FREQ = 50;	//lowest note the detectors and graphs look for
+    public static final int HARMONICS = 5;	//harmonics the hps, goertzel and cqt detectors weigh together, the fundamental included
+    public static final float DECIMATED_RATE_PER_HZ = 5.5f;	//decimated sample rate per Hz of MAX_FREQ, leaving room for the anti-alias filter
+    public static final double SPECTROGRAM_RANGE_DB = 80;	//span of a spectrogram graph, down from its loudest point
+    public static final String CACHE_DIRECTORY = "../cache";	//where pitch tracks are kept between runs
+    public static final float FIR_STOPBAND = 1.1f;	//-fir stopband edge as a multiple of MAX_FREQ
+    public static final String[] DETECTORS = { "peak", "sliding", "yin", "hps", "goertzel", "cqt" };	//names newDetector knows
     public static int BLOCKSIZE = 4410; //effectively FFT's 0.1 seconds of sound
     public static int BLOCK_INC = BLOCKSIZE/5;	//how much to slide between FFT's
+    
+    public final int blockSize;	//samples per block, BLOCKSIZE unless given
+    public final int blockInc;	//samples between blocks, BLOCK_INC unless given
+    
+    
+    public double gateDb = EnergyGate.DEFAULT_THRESHOLD_DB;	//blocks quieter than this get no pitch (NaN)
+    public PitchDetector detector;	//finds the pitch of each block
+    public WindowFunction window = WindowFunction.HAMMING;	//tapers each block for the detectors that window it, set before newDetector
 	
 	public MultiplePitchRead(float sample, float frame, String graphName) {
+		this(sample, frame, graphName, BLOCKSIZE, BLOCK_INC);
+	}
+	
+	public MultiplePitchRead(float sample, float frame, String graphName, int blockSize, int blockInc) {
 		this.sampleRate = sample;
 		this.frameRate = frame;
 		this.graphName = graphName;
+		this.blockSize = blockSize;
+		this.blockInc = blockInc;
+		this.detector = newDetector("peak");
+	}
+	
+	/*
+	 * Returns a pitch detector by name (peak, sliding, yin, hps, goertzel or cqt) set up for this analyzer,
+	 * or null if there is no such detector
+	 * Blocks below gateDb never reach it
+	 * The peak, hps and goertzel detectors taper each block with window; sliding and cqt
+	 * have the Hamming window built into their bins and yin takes no window
+	 */
+	public PitchDetector newDetector(String name)
+	{
+		PitchDetector found;
+		if (name.equalsIgnoreCase("peak"))
+		{
+			PeakPitchDetector peak = new PeakPitchDetector(sampleRate, blockSize, blockInc, MAX_FREQ);
+			peak.window = window;
+			found = peak;
+		}
+		else if (name.equalsIgnoreCase("sliding"))
+			found = new SlidingPitchDetector(sampleRate, blockSize, blockInc, MAX_FREQ);
+		else if (name.equalsIgnoreCase("yin"))
+			found = new YinPitchDetector(sampleRate, blockSize, MIN_FREQ, MAX_FREQ);
+		else if (name.equalsIgnoreCase("hps"))
+		{
+			HarmonicProductSpectrumDetector hps = new HarmonicProductSpectrumDetector(sampleRate, blockSize, MIN_FREQ, MAX_FREQ, HARMONICS);
+			hps.window = window;
+			found = hps;
+		}
+		else if (name.equalsIgnoreCase("goertzel"))
+		{
+			GoertzelPitchDetector goertzel = new GoertzelPitchDetector(sampleRate, blockSize, MIN_FREQ, MAX_FREQ, HARMONICS);
+			goertzel.bank.window = window;
+			found = goertzel;
+		}
+		else if (name.equalsIgnoreCase("cqt"))
+			found = new ConstantQPitchDetector(sampleRate, blockSize, MIN_FREQ, MAX_FREQ, HARMONICS);
+		else
+			return null;
+		return new GatedPitchDetector(found, blockInc, gateDb);
+	}
+	
+	/*
+	 * Returns a goertzel detector that listens for just the given MIDI notes, set up
+	 * and gated like newDetector("goertzel"); its bank is sized by the notes, so a
+	 * short list (the notes of a known scale or reference) costs far less per block
+	 * Throws IllegalArgumentException if there are no notes
+	 */
+	public PitchDetector newDetector(int[] notes)
+	{
+		GoertzelPitchDetector goertzel = new GoertzelPitchDetector(sampleRate, blockSize, notes, HARMONICS);
+		goertzel.bank.window = window;
+		return new GatedPitchDetector(goertzel, blockInc, gateDb);
+	}
+	
+	/*
+	 * Returns the largest factor this analyzer's audio can be decimated by while
+	 * keeping DECIMATED_RATE_PER_HZ samples per second for each Hz of MAX_FREQ
+	 * The factor divides the block size and hop, so decimated blocks land on the same
+	 * instants and keep a block length the FFT handles well
+	 */
+	public int decimationFactor()
+	{
+		int factor = PolyphaseDecimator.factorFor(sampleRate, DECIMATED_RATE_PER_HZ * MAX_FREQ);
+		while (factor > 1 && (blockSize % factor != 0 || blockInc % factor != 0))
+		{
+			factor--;
+		}
+		return factor;
+	}
+	
+	/*
+	 * Returns an analyzer for this one's audio decimated by the given factor
+	 * It covers the same stretch of time with each block and hop, in a tenth of
+	 * the samples when the factor is 10, and uses the same kind of detector
+	 */
+	public MultiplePitchRead decimated(int factor, String detectorName)
+	{
+		MultiplePitchRead reader = new MultiplePitchRead(sampleRate / factor, frameRate / factor, graphName,
+				blockSize / factor, Math.max(1, blockInc / factor));
+		reader.gateDb = gateDb;
+		reader.window = window;
+		reader.detector = reader.newDetector(detectorName);
+		return reader;
 	}
 	
 	/*
@@ -38,26 +154,20 @@ public class MultiplePitchRead {
 	 */
 	public double hamming(double t)
 	{
-		double window = 0.54 - 0.46 * Math.cos((2 * Math.PI * t)/BLOCKSIZE);
+		double window = 0.54 - 0.46 * Math.cos((2 * Math.PI * t)/blockSize);
 		//System.out.println("Value is " + window);
 		return window;
 	}
 	
 	/*
 	 * Takes a block of sound samples from the main string of sound samples
-	 * Windows the samples
+	 * Windows the samples in place with the Hamming window
 	 * Returns the windowed samples
 	 */
 	public double[] window(double[] samples)
 	{
-		int finish = samples.length;
-		double[] windowedSamples = new double[finish];
-		int i;
-		for (i = 0; i < finish; i++)
-		{
-			windowedSamples[i] = samples[i] * hamming(i);
-		}
-		return windowedSamples;
+		WindowFunction.HAMMING.apply(samples);
+		return samples;
 	}
 	
 	/*
@@ -72,81 +182,319 @@ public class MultiplePitchRead {
 	
 	/*
 	 * Takes a double of sound samples (should be one sliding block)
-	 * Performs FFT on the block 
-	 * Returns the maximum frequency
+	 * Returns its pitch according to the analyzer's detector
 	 */
 	public double maxFrequency(double[] sound) {
-		DoubleFFT_1D fftDo = new DoubleFFT_1D(sound.length);
-		double[] fft = new double[sound.length * 2];
-		System.arraycopy(sound, 0, fft, 0, sound.length);
-		fftDo.realForwardFull(fft);
-		
-	    int max_i = -1;
-	    double max_fftval = -1;
-	    for (int i = 0; i < fft.length; i += 2) { // we are only looking at the half of the spectrum
-
-	    	// complex numbers -> vectors, so we compute the length of the vector, which is sqrt(realpart^2+imaginarypart^2)
-	    	double vlen = Math.sqrt(fft[i] * fft[i] + fft[i + 1] * fft[i + 1]);
-	    	
-	    	//
-         	double currFreq = ((i / 2.0) / fft.length) * sampleRate * 2;
-         	if (currFreq != 0)
-         		{
-         			if (max_fftval < vlen) 
-         			{
-         				// if this length is bigger than our stored biggest length
-         				max_fftval = vlen;
-         				max_i = i;
-         			}
-         		}
-            }
-
-            double dominantFreq = ((max_i / 2.0) / fft.length) * sampleRate * 2;
-            return dominantFreq;     
+		return detector.detect(sound, 0);
+	}
+	
+	/*
+	 * Returns the number of sliding blocks that fit in the given number of samples
+	 */
+	public int blockCount(long samples)
+	{
+		if (samples < blockSize)
+			return 0;
+		return (int) ((samples - blockSize)/blockInc + 1);
 	}
 	
 	/*
 	 * Returns an array of FFT frequencies
 	 * Takes an array of samples from a sound file
-	 * Takes sliding samples of the array with a Hanning Window applied
-	 * For each block in the sliding set, it windows them, ffts them, 
+	 * Takes sliding samples of the array with the analyzer's window applied
+	 * For each block in the sliding set, the detector finds its pitch
 	 * and adds a frequency to the return array
 	 */
 	public double[] frequencyAnalysis(double[] samples)
 	{		
 	
 		//the number of sliding samples
-		int blocks = (samples.length - BLOCKSIZE)/BLOCK_INC + 1; 
+		int blocks = blockCount(samples.length); 
 		//System.out.println("Number of blocks is " + blocks);
 		
 		//an array to hold the frequencies
 		double[] frequencies = new double[blocks];
 		
-		double[] currSamp = new double[BLOCKSIZE];
-		int finish = BLOCK_INC * (blocks - 1);
+		int finish = blockInc * (blocks - 1);
 		//System.out.println("Sample size is " + samples.length);
 		//System.out.println("Finish is " + finish);
 		
+		detector.reset();
+		
 		System.out.println("Generating FFT Data...");
 		int i;	//keeps track of the current sample size
-		for (i = 0; i < finish; i += BLOCK_INC)
+		for (i = 0; i <= finish; i += blockInc)
 		{
 			//System.out.println("i is " + i);
-			System.arraycopy(samples, i, currSamp, 0, BLOCKSIZE);
-			frequencies[i/BLOCK_INC] = maxFrequency(currSamp);
+			frequencies[i/blockInc] = detector.detect(samples, i);
+		}
+		return frequencies;
+	}
+	
+	/*
+	 * Returns the same array of FFT frequencies for single precision samples,
+	 * found by a FloatPeakPitchDetector with a single precision FFT
+	 */
+	public double[] frequencyAnalysis(float[] samples)
+	{
+		int blocks = blockCount(samples.length);
+		double[] frequencies = new double[blocks];
+		FloatPeakPitchDetector floatDetector = new FloatPeakPitchDetector(sampleRate, blockSize, MAX_FREQ);
+		floatDetector.window = window;
+		EnergyGate gate = new EnergyGate(blockSize, blockInc, gateDb);
+		
+		System.out.println("Generating FFT Data...");
+		int b;
+		for (b = 0; b < blocks; b++)
+		{
+			frequencies[b] = gate.silent(samples, b * blockInc) ? Double.NaN : floatDetector.detect(samples, b * blockInc);
 		}
 		return frequencies;
 	}
 	
+	/*
+	 * Returns the same array of FFT frequencies as above, computed in parallel
+	 * The blocks are independent, so the block range is split across the pool
+	 * and each worker thread finds their pitches with its own copy of the detector
+	 */
+	public double[] frequencyAnalysis(double[] samples, ForkJoinPool pool)
+	{
+		int blocks = blockCount(samples.length);
+		double[] frequencies = new double[blocks];
+		
+		//a few leaves per thread keeps the workers balanced without much splitting
+		int leafBlocks = Math.max(1, blocks / (pool.getParallelism() * 8));
+		
+		System.out.println("Generating FFT Data...");
+		ThreadLocal<PitchDetector> workers = new ThreadLocal<PitchDetector>() {
+			protected PitchDetector initialValue()
+			{
+				return detector.copy();
+			}
+		};
+		pool.invoke(new BlockTask(samples, frequencies, 0, blocks, leafBlocks, workers));
+		return frequencies;
+	}
+	
+	/*
+	 * Finds the frequencies of a range of blocks, splitting the range in half
+	 * until it is small enough to do directly
+	 */
+	private class BlockTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final double[] samples;
+		private final double[] frequencies;
+		private final int from;		//first block
+		private final int to;		//one past the last block
+		private final int leafBlocks;
+		private final ThreadLocal<PitchDetector> workers;	//each worker thread's detector
+		
+		BlockTask(double[] samples, double[] frequencies, int from, int to, int leafBlocks, ThreadLocal<PitchDetector> workers)
+		{
+			this.samples = samples;
+			this.frequencies = frequencies;
+			this.from = from;
+			this.to = to;
+			this.leafBlocks = leafBlocks;
+			this.workers = workers;
+		}
+		
+		protected void compute()
+		{
+			if (to - from <= leafBlocks)
+			{
+				PitchDetector worker = workers.get();
+				worker.reset();
+				
+				//a detector that remembers the previous block sees it first, as it would serially
+				int b;
+				if (worker.usesPreviousBlock() && from > 0)
+				{
+					for (b = primingBlock(worker, from); b < from; b++)
+					{
+						worker.detect(samples, b * blockInc);
+					}
+				}
+				
+				for (b = from; b < to; b++)
+				{
+					frequencies[b] = worker.detect(samples, b * blockInc);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new BlockTask(samples, frequencies, from, middle, leafBlocks, workers),
+					new BlockTask(samples, frequencies, middle, to, leafBlocks, workers));
+		}
+	}
+	
+	/*
+	 * Returns the first block a fresh copy of a detector has to see, in order, to find
+	 * the same pitch for the given block as the detector run from block 0
+	 * That is the block before for most; a sliding DFT has to go back to its last resync
+	 */
+	private static int primingBlock(PitchDetector detector, int block)
+	{
+		PitchDetector inner = GatedPitchDetector.ungated(detector);
+		if (inner instanceof SlidingPitchDetector)
+			return ((SlidingPitchDetector) inner).primingBlock(block);
+		return block - 1;
+	}
+	
+	/*
+	 * Returns an array of FFT frequencies, reading the samples as it goes
+	 * Only one block of samples is held at a time, so memory use doesn't grow
+	 * with the length of the file
+	 */
+	public double[] frequencyAnalysis(WavReader reader) throws IOException
+	{
+		final double[] frequencies = new double[blockCount(reader.header.frames())];
+		System.out.println("Generating FFT Data...");
+		analyze(reader, new PitchListener() {
+			public void pitchDetected(long position, double frequency) {
+				frequencies[(int) (position / blockInc)] = frequency;
+			}
+		});
+		return frequencies;
+	}
+	
+	/*
+	 * Finds the pitch of each block, reading the samples as it goes, and hands
+	 * each one to a listener straight after the detector has seen the block
+	 * Nothing is kept, so this works for files of any length
+	 */
+	public void analyze(WavReader reader, PitchListener listener) throws IOException
+	{
+		int blocks = blockCount(reader.header.frames());
+		double[] currSamp = new double[blockSize];
+		detector.reset();
+		
+		int have = reader.readFully(currSamp, 0, blockSize);
+		int b;
+		for (b = 0; b < blocks && have == blockSize; b++)
+		{
+			listener.pitchDetected((long) b * blockInc, detector.detect(currSamp, 0));
+			
+			//slide the block along by one hop
+			System.arraycopy(currSamp, blockInc, currSamp, 0, blockSize - blockInc);
+			have = blockSize - blockInc + reader.readFully(currSamp, blockSize - blockInc, blockInc);
+		}
+	}
+	
+	/*
+	 * Returns the spectrogram of a sound file, streaming it block by block
+	 * The frames are the spectra the detector computes anyway on its way to each pitch;
+	 * a detector without a spectrum (YIN) is stood in for by a peak detector
+	 * Quiet blocks are kept too, so the gate is left out
+	 */
+	public Spectrogram spectrogram(File soundfile, FrequencyScale scale) throws IOException
+	{
+		final Spectrogram spectrogram = new Spectrogram(sampleRate, blockSize, blockInc,
+				MIN_FREQ, MAX_FREQ, scale, Spectrogram.DEFAULT_MAX_FRAMES);
+		PitchDetector saved = detector;
+		detector = GatedPitchDetector.ungated(detector);
+		if (!(detector instanceof SpectralPitchDetector))
+		{
+			PeakPitchDetector peak = new PeakPitchDetector(sampleRate, blockSize, blockInc, MAX_FREQ);
+			peak.window = window;
+			detector = peak;
+		}
+		final SpectralPitchDetector source = (SpectralPitchDetector) detector;
+		WavReader reader = new WavReader(soundfile);
+		try {
+			analyze(reader, new PitchListener() {
+				public void pitchDetected(long position, double frequency) {
+					spectrogram.addFrame(source.lastSpectrum());
+				}
+			});
+		} finally {
+			detector = saved;
+			reader.close();
+		}
+		spectrogram.finish();
+		return spectrogram;
+	}
+	
+	/*
+	 * Splits a sound file into notes, handing each to a listener as it ends
+	 * Streams the file, so it never holds more than a block of samples or pitches
+	 */
+	public void segmentNotes(File soundfile, NoteListener listener) throws IOException
+	{
+		NoteSegmenter segmenter = new NoteSegmenter(sampleRate, blockSize, blockInc, detector, listener);
+		WavReader reader = new WavReader(soundfile);
+		try {
+			analyze(reader, segmenter);
+		} finally {
+			reader.close();
+		}
+		segmenter.finish();
+	}
+	
+	/*
+	 * Returns an array of FFT frequencies for one region of a mapped file
+	 * Takes the first frame of the region and its length in frames
+	 * Only the blocks inside the region are read, so the cost doesn't depend
+	 * on the size of the whole file
+	 */
+	public double[] frequencyAnalysis(MappedWavFile file, long start, long length)
+	{
+		length = Math.max(0, Math.min(length, file.frames() - start));
+		int blocks = blockCount(length);
+		double[] frequencies = new double[blocks];
+		double[] currSamp = new double[blockSize];
+		detector.reset();
+		
+		int b;
+		for (b = 0; b < blocks; b++)
+		{
+			file.readFrames(start + (long) b * blockInc, currSamp);
+			frequencies[b] = detector.detect(currSamp, 0);
+		}
+		return frequencies;
+	}
+	
+	/*
+	 * Returns up to maxPeaks pitches for every block, for audio with several notes at once
+	 * Blocks below gateDb get a frame with no pitches
+	 * Takes an array of samples from a sound file
+	 */
+	public PitchFrames multiPitchAnalysis(double[] samples, int maxPeaks)
+	{
+		int blocks = blockCount(samples.length);
+		PitchFrames frames = new PitchFrames(maxPeaks, blocks);
+		MultiPitchExtractor extractor = new MultiPitchExtractor(sampleRate, blockSize, MIN_FREQ, MAX_FREQ);
+		extractor.window = window;
+		EnergyGate gate = new EnergyGate(blockSize, blockInc, gateDb);
+		
+		System.out.println("Generating FFT Data...");
+		int b;
+		for (b = 0; b < blocks; b++)
+		{
+			//blocks below gateDb get no peaks, as they get no pitch from the detector
+			if (gate.silent(samples, b * blockInc))
+				frames.addEmptyFrame();
+			else
+				extractor.extract(samples, b * blockInc, frames);
+		}
+		return frames;
+	}
+	
 	/*
 	 * Gets the array of max frequencies for a sound file
-	 * Gets the samples and performs frequency analysis
-	 * Simply calls the other the other functions above
+	 * Streams the samples through the frequency analysis
 	 * Returns the array of frequencies
 	 */
-	public double[] getFrequencyData(File soundfile)
+	public double[] getFrequencyData(File soundfile) throws IOException
 	{
-		return frequencyAnalysis(getSampleData(soundfile));
+		WavReader reader = new WavReader(soundfile);
+		try {
+			return frequencyAnalysis(reader);
+		} finally {
+			reader.close();
+		}
 	}
 	
 	/*
@@ -185,6 +533,44 @@ public class MultiplePitchRead {
 		 }
 	}
 
+	/*
+	 * Graphs several pitches per frame as points, one series per rank
+	 * (strongest, second strongest, ...)
+	 * Takes the filename and the axis labels
+	 */
+	public void graph(String filename, PitchFrames frames, String yaxis, String xaxis)
+	{
+		XYSeriesCollection dataset = new XYSeriesCollection();
+		int rank;
+		for (rank = 0; rank < frames.maxPeaks; rank++)
+		{
+			XYSeries series = new XYSeries("Peak " + (rank + 1));
+			int f;
+			for (f = 0; f < frames.frames; f++)
+			{
+				if (rank < frames.count(f))
+					series.add(f, frames.frequency(f, rank));
+			}
+			dataset.addSeries(series);
+		}
+		
+		JFreeChart chart = ChartFactory.createScatterPlot(
+		filename, // Title
+		xaxis, // x-axis Label
+		yaxis, // y-axis Label
+		dataset, // Dataset
+		PlotOrientation.VERTICAL, // Plot Orientation
+		true, // Show Legend
+		true, // Use tooltips
+		false // Configure chart to generate URLs?
+		);
+		try {
+		ChartUtilities.saveChartAsJPEG(new File("../images/" + filename + ".jpg"), chart, 500, 300);
+		} catch (IOException e) {
+			System.err.println("Problem occurred creating chart.");
+		}
+	}
+
 	/*
 	 * A method that gives a wav file as an array of audio bytes
 	 * @param the soundfile
@@ -209,20 +595,20 @@ public class MultiplePitchRead {
 	
 	/*
 	 * A method that takes a wav file and returns it as a double array
+	 * Skips the header and mixes multiple channels down to one
 	 * @param the soundfile
 	 * @return an array of doubles
 	 */
 	public double[] read(File soundfile) {
-	        byte[] data;
 			try {
-				data = readByte(soundfile);
-			
-	        int N = data.length;
-	        double[] d = new double[N/2];
-	        for (int i = 0; i < N/2; i++) {
-	            d[i] = ((short) (((data[2*i+1] & 0xFF) << 8) + (data[2*i] & 0xFF))) / ((double) MAX_16_BIT);
-	        }
-	        return d;
+				WavReader reader = new WavReader(soundfile);
+				try {
+					double[] d = new double[(int) reader.header.frames()];
+					int n = reader.readFully(d, 0, d.length);
+					return n == d.length ? d : Arrays.copyOf(d, n);
+				} finally {
+					reader.close();
+				}
 			} catch (IOException e) {
 				e.printStackTrace();
 				return null;
@@ -232,15 +618,118 @@ public class MultiplePitchRead {
 
 	
 	
+	/*
+	 * Returns the mono samples of a wav file in single precision, half the memory
+	 * of read(); null if the file can't be read
+	 */
+	public float[] readFloat(File soundfile)
+	{
+		try {
+			WavReader reader = new WavReader(soundfile);
+			try {
+				float[] f = new float[(int) reader.header.frames()];
+				int n = reader.readFully(f, 0, f.length);
+				return n == f.length ? f : Arrays.copyOf(f, n);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
 	public static void main(String[] args) throws IOException
 	{
-		if (args.length != 2)
+		//optional flags come before the two file names
+		String detectorName = "peak";
+		boolean decimate = false;
+		boolean fir = false;
+		boolean notes = false;
+		boolean single = false;
+		int peaks = 0;	//pitches per block to graph with -peaks, 0 for none
+		double gateDb = EnergyGate.DEFAULT_THRESHOLD_DB;
+		WindowFunction window = WindowFunction.HAMMING;
+		FrequencyScale spectrogramScale = null;
+		int arg = 0;
+		while (arg < args.length && args[arg].startsWith("-"))
+		{
+			if (args[arg].equals("-decimate"))
+			{
+				decimate = true;
+				arg++;
+			}
+			else if (args[arg].equals("-notes"))
+			{
+				notes = true;
+				arg++;
+			}
+			else if (args[arg].equals("-float"))
+			{
+				single = true;
+				arg++;
+			}
+			else if (args[arg].equals("-fir"))
+			{
+				fir = true;
+				arg++;
+			}
+			else if (args[arg].equals("-spectrogram") && arg + 1 < args.length)
+			{
+				try {
+					spectrogramScale = FrequencyScale.valueOf(args[arg + 1].toUpperCase());
+				} catch (IllegalArgumentException e) {
+					printUsageAndExit();
+				}
+				arg += 2;
+			}
+			else if (args[arg].equals("-gate") && arg + 1 < args.length)
+			{
+				try {
+					gateDb = args[arg + 1].equals("off") ? Double.NEGATIVE_INFINITY : Double.parseDouble(args[arg + 1]);
+				} catch (NumberFormatException e) {
+					printUsageAndExit();
+				}
+				arg += 2;
+			}
+			else if (args[arg].equals("-peaks") && arg + 1 < args.length)
+			{
+				try {
+					peaks = Integer.parseInt(args[arg + 1]);
+				} catch (NumberFormatException e) {
+					printUsageAndExit();
+				}
+				if (peaks < 1 || peaks > Byte.MAX_VALUE)
+					printUsageAndExit();
+				arg += 2;
+			}
+			else if (args[arg].equals("-d") && arg + 1 < args.length)
+			{
+				detectorName = args[arg + 1];
+				arg += 2;
+			}
+			else if (args[arg].equals("-window") && arg + 1 < args.length)
+			{
+				window = WindowFunction.forName(args[arg + 1]);
+				if (window == null)
+					printUsageAndExit();
+				arg += 2;
+			}
+			else
+				printUsageAndExit();
+		}
+		if (args.length - arg != 2)
 		{
 			printUsageAndExit();
 		}
+		if (single && (decimate || fir || !detectorName.equals("peak")))
+		{
+			out("-float only goes with the peak detector and the Butterworth filter");
+			printUsageAndExit();
+		}
 
-		String strFilename = args[0];
-		String imgFilename = args[1];
+		String strFilename = args[arg];
+		String imgFilename = args[arg + 1];
 		
 		File soundFile = new File(strFilename);
 		AudioInputStream audioInputStream = null;
@@ -255,26 +744,128 @@ public class MultiplePitchRead {
 		
 		AudioFormat	audioFormat = audioInputStream.getFormat();	
 		MultiplePitchRead pitchReader = new MultiplePitchRead(audioFormat.getSampleRate(), audioFormat.getFrameRate(), imgFilename);
+		pitchReader.gateDb = gateDb;
+		pitchReader.window = window;
+		pitchReader.detector = pitchReader.newDetector(detectorName);
+		if (pitchReader.detector == null)
+		{
+			out("Unknown detector " + detectorName);
+			printUsageAndExit();
+		}
+		
+		//list the notes, streaming the file
+		if (notes)
+		{
+			pitchReader.segmentNotes(soundFile, new NoteListener() {
+				public void noteDetected(double onset, double duration, int midiNote, double confidence) {
+					out(String.format("%8.2fs %6.2fs %-4s %4.2f", onset, duration, NoteSegmenter.noteName(midiNote), confidence));
+				}
+			});
+		}
 		
-		//get the samples
-		double[] samples = pitchReader.getSampleData(soundFile);
+		//graph the whole spectrum of each block, streaming the file
+		if (spectrogramScale != null)
+		{
+			Spectrogram spectrogram = pitchReader.spectrogram(soundFile, spectrogramScale);
+			System.out.println("Graphing Spectrogram...");
+			pitchReader.graph(pitchReader.graphName + " Spectrogram", spectrogram);
+		}
 		
-		//instantiate the frequencies without filtering
+		//graph the strongest few pitches of each block, for audio with several notes at once
+		if (peaks > 0)
+		{
+			PitchFrames frames = pitchReader.multiPitchAnalysis(pitchReader.getSampleData(soundFile), peaks);
+			System.out.println("Graphing Peaks...");
+			pitchReader.graph(pitchReader.graphName + " Peaks", frames, "Frequency", "Index");
+		}
 		
-		//filter the sound
-		//filter.filter();
-		//samples = filter.samples;
+		//tracks from earlier runs on the same sound with the same settings are loaded, not redone
+		PitchTrackCache cache = new PitchTrackCache(new File(CACHE_DIRECTORY));
+		String soundHash = PitchTrackCache.contentHash(soundFile);
+		double[] samples = null;
+		float[] singleSamples = null;	//for -float, in place of samples
+		String precision = single ? ", float" : "";
+		String analysis = detectorName + ", gate " + gateDb + "dB, " + window.name + " window";
 		
 		//instantiate the frequencies
-		double[] frequencies = pitchReader.frequencyAnalysis(samples);
+		String settings = analysis + ", unfiltered" + precision;
+		double[] frequencies = cache.load(soundHash, pitchReader.sampleRate, pitchReader.blockSize, pitchReader.blockInc, settings);
+		if (frequencies == null)
+		{
+			if (single)
+			{
+				singleSamples = pitchReader.readFloat(soundFile);
+				frequencies = pitchReader.frequencyAnalysis(singleSamples);
+			}
+			else
+			{
+				samples = pitchReader.getSampleData(soundFile);
+				frequencies = pitchReader.frequencyAnalysis(samples);
+			}
+			store(cache, soundHash, pitchReader, settings, frequencies);
+		}
 		System.out.println("Graphing FFT Data Before Filtering...");
 		pitchReader.graph(pitchReader.graphName, frequencies, "Frequency", "Index");
 		
 		//instantiate the frequencies after filtering
-		LowPassFilter filter = new LowPassFilter(samples, pitchReader.sampleRate, pitchReader.MAX_FREQ);
-		samples = filter.filter();
-		
-		frequencies = pitchReader.frequencyAnalysis(samples);
+		MultiplePitchRead filteredReader = pitchReader;
+		int factor = 1;
+		if (decimate)
+		{
+			factor = pitchReader.decimationFactor();
+			filteredReader = pitchReader.decimated(factor, detectorName);
+			settings = analysis + ", decimated by " + factor;
+		}
+		else if (fir)
+			settings = analysis + ", FIR low-pass to " + pitchReader.MAX_FREQ + "-" + FIR_STOPBAND * pitchReader.MAX_FREQ + "Hz";
+		else
+			settings = analysis + ", Butterworth 4 low-pass at " + pitchReader.MAX_FREQ + "Hz" + precision;
+		frequencies = cache.load(soundHash, filteredReader.sampleRate, filteredReader.blockSize, filteredReader.blockInc, settings);
+		if (frequencies == null && single)
+		{
+			if (singleSamples == null)
+				singleSamples = pitchReader.readFloat(soundFile);
+			BiquadCascade filter = BiquadCascade.butterworthLowPass(4, pitchReader.MAX_FREQ, pitchReader.sampleRate);
+			frequencies = pitchReader.frequencyAnalysis(filter.filter(singleSamples));
+			store(cache, soundHash, pitchReader, settings, frequencies);
+		}
+		else if (frequencies == null)
+		{
+			if (samples == null)
+				samples = pitchReader.getSampleData(soundFile);
+			if (decimate)
+			{
+				//the anti-alias filter does the low-pass, and the analysis runs on a fraction of the samples
+				PolyphaseDecimator decimator = PolyphaseDecimator.forPitch(pitchReader.sampleRate, pitchReader.MAX_FREQ, factor);
+				//as with -fir, the filter delays everything by half its length, so decimate delay more
+				//samples and drop the outputs that cover the first delay; lead zeros in front make
+				//the outputs kept fall delay samples after each multiple of factor
+				int delay = (int) Math.round(decimator.delay());
+				int lead = ((factor - 1 - delay) % factor + factor) % factor;
+				double[] padded = new double[lead + samples.length + delay];
+				System.arraycopy(samples, 0, padded, lead, samples.length);
+				int skip = (lead + delay + 1 - factor) / factor;
+				samples = Arrays.copyOfRange(decimator.decimate(padded), skip, skip + samples.length / factor);
+			}
+			else if (fir)
+			{
+				//a sharp linear phase low-pass, thousands of taps long, applied by FFT convolution
+				double[] kernel = FirDesign.kaiserLowPass(pitchReader.MAX_FREQ, FIR_STOPBAND * pitchReader.MAX_FREQ,
+						PolyphaseDecimator.ATTENUATION_DB, pitchReader.sampleRate);
+				//the kernel delays everything by half its length, so filter delay more samples
+				//and drop that many from the front to keep the blocks where the other paths put them
+				int delay = (kernel.length - 1) / 2;
+				double[] padded = new OverlapSaveConvolver(kernel).filter(Arrays.copyOf(samples, samples.length + delay));
+				samples = Arrays.copyOfRange(padded, delay, delay + samples.length);
+			}
+			else
+			{
+				BiquadCascade filter = BiquadCascade.butterworthLowPass(4, pitchReader.MAX_FREQ, pitchReader.sampleRate);
+				samples = filter.filter(samples);
+			}
+			frequencies = filteredReader.frequencyAnalysis(samples);
+			store(cache, soundHash, filteredReader, settings, frequencies);
+		}
 		System.out.println("Graphing FFT Data After Filtering...");
 		pitchReader.graph(pitchReader.graphName + " Filtered", frequencies, "Frequency", "Index");
 
@@ -287,10 +878,101 @@ public class MultiplePitchRead {
 	}
 
 
+	/*
+	 * Graphs a spectrogram as a heat map of power in dB, over the 80dB below its loudest point
+	 */
+	public void graph(String filename, Spectrogram spectrogram)
+	{
+		int frames = spectrogram.frames();
+		int rows = spectrogram.rows();
+		double[][] cells = new double[3][frames * rows];	//x, y and z of every cell
+		double loudest = Double.NEGATIVE_INFINITY;
+		int f, r;
+		for (f = 0; f < frames; f++)
+		{
+			for (r = 0; r < rows; r++)
+			{
+				int cell = f * rows + r;
+				cells[0][cell] = spectrogram.time(f);
+				cells[1][cell] = spectrogram.rowValue(r);
+				cells[2][cell] = 10 * Math.log10(spectrogram.power(f, r) + 1e-20);
+				loudest = Math.max(loudest, cells[2][cell]);
+			}
+		}
+		DefaultXYZDataset dataset = new DefaultXYZDataset();
+		dataset.addSeries("Power", cells);
+		
+		//dark blue for quiet through to red for loud
+		double quietest = loudest - SPECTROGRAM_RANGE_DB;
+		LookupPaintScale paintScale = new LookupPaintScale(quietest, loudest + 1, Color.black);
+		int step;
+		for (step = 0; step < 64; step++)
+		{
+			paintScale.add(quietest + step * SPECTROGRAM_RANGE_DB / 64, Color.getHSBColor(0.7f * (1 - step / 63f), 1f, 0.3f + 0.7f * step / 63f));
+		}
+		
+		XYBlockRenderer renderer = new XYBlockRenderer();
+		renderer.setPaintScale(paintScale);
+		renderer.setBlockWidth(spectrogram.frameSeconds());
+		renderer.setBlockHeight(rows > 1 ? spectrogram.rowValue(1) - spectrogram.rowValue(0) : 1);
+		renderer.setBlockAnchor(RectangleAnchor.CENTER);
+		
+		ValueAxis yAxis;
+		if (spectrogram.scale == FrequencyScale.CHROMA)
+		{
+			String[] names = new String[12];
+			for (r = 0; r < 12; r++)
+			{
+				names[r] = NoteSegmenter.noteName(r).replaceAll("-?[0-9]", "");
+			}
+			yAxis = new SymbolAxis("Pitch Class", names);
+		}
+		else
+		{
+			//span just the rows, from the edge of the first block to the edge of the last,
+			//rather than down to zero, which would leave the lower half of a MIDI axis empty
+			NumberAxis frequencyAxis = new NumberAxis(spectrogram.scale == FrequencyScale.LOG ? "MIDI Note" : "Frequency");
+			frequencyAxis.setAutoRangeIncludesZero(false);
+			if (rows > 0)
+			{
+				double half = renderer.getBlockHeight() / 2;
+				frequencyAxis.setRange(spectrogram.rowValue(0) - half, spectrogram.rowValue(rows - 1) + half);
+			}
+			yAxis = frequencyAxis;
+		}
+		NumberAxis xAxis = new NumberAxis("Seconds");
+		xAxis.setAutoRangeIncludesZero(false);
+		xAxis.setLowerMargin(0);
+		xAxis.setUpperMargin(0);
+		
+		XYPlot plot = new XYPlot(dataset, xAxis, yAxis, renderer);
+		plot.setBackgroundPaint(Color.black);
+		JFreeChart chart = new JFreeChart(filename, plot);
+		chart.removeLegend();
+		try {
+			ChartUtilities.saveChartAsJPEG(new File("../images/" + filename + ".jpg"), chart, 500, 300);
+		} catch (IOException e) {
+			System.err.println("Problem occurred creating chart.");
+		}
+	}
+	
+	/*
+	 * Keeps a track in the cache for the next run; a failure only costs that run the time
+	 */
+	private static void store(PitchTrackCache cache, String soundHash, MultiplePitchRead reader, String settings, double[] frequencies)
+	{
+		try {
+			cache.store(soundHash, reader.sampleRate, reader.blockSize, reader.blockInc, settings, frequencies);
+		} catch (IOException e) {
+			out("Could not cache the pitch track: " + e.getMessage());
+		}
+	}
+	
 private static void printUsageAndExit()
 	{
-		out("SimpleAudioPlayer: usage:");
-		out("\tjava SimpleAudioPlayer <soundfile>");
+		out("MultiplePitchRead: usage:");
+		out("\tjava MultiplePitchRead [-d peak|sliding|yin|hps|goertzel|cqt] [-decimate | -fir | -float] [-notes] [-peaks count] [-spectrogram linear|log|chroma] [-gate dB|off] [-window hamming|hann|blackman-harris|kaiser] <soundfile> <graphname>");
+		out("\t-window tapers the blocks for peak, hps, goertzel, -float and -peaks; sliding and cqt are always Hamming");
 		System.exit(1);
 	}
 
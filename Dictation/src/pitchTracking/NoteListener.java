@@ -0,0 +1,15 @@
+package pitchTracking;
+
+/*
+ * Receives notes as a segmenter finalizes them
+ */
+public interface NoteListener {
+	
+	/*
+	 * Called once per note, in order, as soon as the note has ended
+	 * Takes its onset and duration in seconds, its nearest MIDI note number
+	 * (60 is middle C) and a confidence from 0 to 1 in how steady and
+	 * well voiced it was
+	 */
+	void noteDetected(double onset, double duration, int midiNote, double confidence);
+}
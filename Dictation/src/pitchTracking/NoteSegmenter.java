@@ -0,0 +1,238 @@
+package pitchTracking;
+
+/*
+ * Turns a stream of per-block pitches into notes
+ * Runs of blocks with a steady pitch are merged into one note, which is handed
+ * to a listener as soon as it ends, so nothing grows with the length of the audio
+ * A note also ends where a new one starts at the same pitch; those onsets are found
+ * by spectral flux, the rise in the magnitude spectrum from one block to the next,
+ * read from the FFT the detector already did (only spectral detectors have one, so
+ * with YIN repeated notes run together)
+ * Feed it as a PitchListener, one block at a time, right after the detector has
+ * seen the block, and call finish() at the end
+ */
+public class NoteSegmenter implements PitchListener {
+	
+	public static final double PITCH_TOLERANCE = 0.5;	//semitones a block may stray from its note
+	public static final int MIN_FRAMES = 3;				//blocks a pitch must hold to count as a note
+	public static final double ONSET_THRESHOLD = 0.3;	//share of a block's magnitude that must be new for an onset
+	public static final double SILENCE_LEVEL = 0.01;	//blocks quieter than this, against the loudest so far, are unvoiced
+	
+	private static final String[] NAMES = {"C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B"};
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final int hop;
+	
+	private final SpectralPitchDetector spectral;	//where the spectrum of each block comes from, null if nowhere
+	private final NoteListener listener;
+	
+	private double[] magnitudes;	//magnitude spectrum of the previous block, for the flux
+	private double newEnergy;		//rise in magnitude found by the last call to flux
+	private double previousFlux;
+	private double loudest;			//largest spectrum total so far
+	private int sinceOnset;			//blocks since the last onset
+	
+	private final Run note = new Run();		//the note being built
+	private final Run pending = new Run();	//blocks that disagree with it, until they make a note of their own
+	private int unvoiced;					//unvoiced blocks in a row
+	
+	public NoteSegmenter(float sampleRate, int blockSize, int hop, PitchDetector detector, NoteListener listener)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.hop = hop;
+		PitchDetector inner = GatedPitchDetector.ungated(detector);
+		this.spectral = inner instanceof SpectralPitchDetector ? (SpectralPitchDetector) inner : null;
+		this.listener = listener;
+		reset();
+	}
+	
+	/*
+	 * Returns the MIDI note number of a frequency, not rounded
+	 */
+	public static double midi(double frequency)
+	{
+		return 69 + 12 * Math.log(frequency / 440) / Math.log(2);
+	}
+	
+	/*
+	 * Returns the name of a MIDI note, like C4 for 60
+	 */
+	public static String noteName(int midiNote)
+	{
+		return NAMES[((midiNote % 12) + 12) % 12] + ((int) Math.floor(midiNote / 12.0) - 1);
+	}
+	
+	public void pitchDetected(long position, double frequency)
+	{
+		double time = (position + blockSize / 2.0) / sampleRate;	//center of the block
+		boolean onset = false;
+		boolean voiced = frequency > 0;	//false for NaN too
+		
+		//a gated block has no spectrum of its own, and no pitch either
+		if (spectral != null && !Double.isNaN(frequency))
+		{
+			double[] spectrum = spectral.lastSpectrum();
+			double total = flux(spectrum);
+			loudest = Math.max(loudest, total);
+			voiced &= total > SILENCE_LEVEL * loudest;
+			
+			//an onset is a flux that is high and still rising, not too soon after the last
+			double flux = total > 0 ? newEnergy / total : 0;
+			onset = flux > ONSET_THRESHOLD && flux > previousFlux && sinceOnset >= MIN_FRAMES;
+			previousFlux = flux;
+			sinceOnset = onset ? 0 : sinceOnset + 1;
+		}
+		
+		if (!voiced)
+		{
+			if (++unvoiced >= MIN_FRAMES)
+				endNote();
+			pending.clear();
+			return;
+		}
+		unvoiced = 0;
+		
+		double pitch = midi(frequency);
+		if (note.count == 0 || onset)
+		{
+			endNote();
+			note.start(time, pitch);
+		}
+		else if (note.agrees(pitch))
+		{
+			note.add(time, pitch);
+			pending.clear();
+		}
+		else
+		{
+			//one odd block is a glitch; MIN_FRAMES that agree with each other are a new note
+			if (pending.count > 0 && pending.agrees(pitch))
+				pending.add(time, pitch);
+			else
+				pending.start(time, pitch);
+			if (pending.count >= MIN_FRAMES)
+			{
+				endNote();
+				note.copy(pending);
+				pending.clear();
+			}
+		}
+	}
+	
+	/*
+	 * Hands over the note still being built, at the end of the audio
+	 */
+	public void finish()
+	{
+		endNote();
+		pending.clear();
+	}
+	
+	public void reset()
+	{
+		magnitudes = null;
+		previousFlux = 0;
+		loudest = 0;
+		sinceOnset = MIN_FRAMES;
+		note.clear();
+		pending.clear();
+		unvoiced = 0;
+	}
+	
+	/*
+	 * Takes the packed spectrum of a block and remembers its magnitudes
+	 * Sets newEnergy to the summed rise in magnitude since the previous block
+	 * Returns the summed magnitude of the block
+	 */
+	private double flux(double[] spectrum)
+	{
+		int bins = blockSize / 2;
+		if (magnitudes == null)
+			magnitudes = new double[bins];
+		double total = 0;
+		newEnergy = 0;
+		for (int k = 1; k < bins; k++)
+		{
+			double m = Spectrum.magnitude(spectrum, blockSize, k);
+			if (m > magnitudes[k])
+				newEnergy += m - magnitudes[k];
+			magnitudes[k] = m;
+			total += m;
+		}
+		return total;
+	}
+	
+	/*
+	 * Hands the note being built to the listener, if it lasted long enough, and clears it
+	 */
+	private void endNote()
+	{
+		if (note.count >= MIN_FRAMES)
+		{
+			double duration = note.last - note.first + hop / (double) sampleRate;
+			int frames = (int) Math.round((note.last - note.first) * sampleRate / hop) + 1;
+			double mean = note.mean();
+			double spread = Math.sqrt(Math.max(0, note.sumSquares / note.count - mean * mean));
+			
+			//how many of its blocks agreed with it, and how tightly
+			double confidence = (double) note.count / frames * Math.max(0, 1 - spread / PITCH_TOLERANCE);
+			listener.noteDetected(note.first, duration, (int) Math.round(mean), confidence);
+		}
+		note.clear();
+	}
+	
+	/*
+	 * A run of blocks with about the same pitch
+	 */
+	private static class Run {
+		
+		double first;		//time of the first block
+		double last;		//time of the last block
+		int count;			//blocks in the run
+		double sum;			//of their MIDI pitches
+		double sumSquares;
+		
+		void start(double time, double pitch)
+		{
+			clear();
+			first = time;
+			add(time, pitch);
+		}
+		
+		void add(double time, double pitch)
+		{
+			last = time;
+			count++;
+			sum += pitch;
+			sumSquares += pitch * pitch;
+		}
+		
+		boolean agrees(double pitch)
+		{
+			return Math.abs(pitch - mean()) <= PITCH_TOLERANCE;
+		}
+		
+		double mean()
+		{
+			return sum / count;
+		}
+		
+		void copy(Run other)
+		{
+			first = other.first;
+			last = other.last;
+			count = other.count;
+			sum = other.sum;
+			sumSquares = other.sumSquares;
+		}
+		
+		void clear()
+		{
+			count = 0;
+			sum = 0;
+			sumSquares = 0;
+		}
+	}
+}
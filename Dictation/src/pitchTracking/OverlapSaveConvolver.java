@@ -0,0 +1,134 @@
+package pitchTracking;
+
+import java.util.Arrays;
+
+/*
+ * Applies a long FIR filter by overlap-save FFT convolution
+ * Each block of the stream is transformed, multiplied by the kernel's spectrum
+ * and transformed back, which costs O(log B) per sample rather than O(taps)
+ * The kernel spectrum, the FFT plan and the block buffers are all made once
+ * Streams in place like the other SampleFilters, with the output delayed by
+ * latency() samples, since a whole block has to arrive before it can be filtered
+ */
+public class OverlapSaveConvolver implements SampleFilter {
+	
+	public final int taps;			//length of the kernel
+	public final int blockSize;		//FFT size, a power of two
+	
+	private final FFTPlan plan;
+	private final double[] kernelSpectrum;	//packed spectrum of the zero-padded kernel
+	private final double[] input;			//taps - 1 samples of history, then the block being filled
+	private final double[] output;			//the last block's outputs, handed out while the next fills
+	private int position;					//where the next sample goes in input
+	
+	public OverlapSaveConvolver(double[] kernel)
+	{
+		this(kernel, defaultBlockSize(kernel.length));
+	}
+	
+	public OverlapSaveConvolver(double[] kernel, int blockSize)
+	{
+		if (blockSize < kernel.length || Integer.bitCount(blockSize) != 1)
+			throw new IllegalArgumentException("Block size must be a power of two no smaller than the kernel");
+		this.taps = kernel.length;
+		this.blockSize = blockSize;
+		this.plan = new FFTPlan(blockSize);
+		this.kernelSpectrum = new double[blockSize];
+		System.arraycopy(kernel, 0, kernelSpectrum, 0, taps);
+		plan.fft.realForward(kernelSpectrum);
+		this.input = new double[blockSize];
+		this.output = new double[latency()];
+		this.position = taps - 1;
+	}
+	
+	/*
+	 * Returns the smallest power of two at least four times the kernel, which keeps
+	 * most of each block as new output without making the FFT needlessly large
+	 */
+	public static int defaultBlockSize(int taps)
+	{
+		return Math.max(256, Integer.highestOneBit(Math.max(1, 4 * taps - 1)) << 1);
+	}
+	
+	/*
+	 * Returns how many samples the streamed output lags the input by, which is also
+	 * the number of new samples each block takes
+	 */
+	public int latency()
+	{
+		return blockSize - taps + 1;
+	}
+	
+	public void process(double[] samples, int offset, int length)
+	{
+		int history = taps - 1;
+		while (length > 0)
+		{
+			int n = Math.min(length, blockSize - position);
+			System.arraycopy(samples, offset, input, position, n);
+			System.arraycopy(output, position - history, samples, offset, n);
+			position += n;
+			offset += n;
+			length -= n;
+			if (position == blockSize)
+			{
+				convolveBlock();
+				System.arraycopy(input, blockSize - history, input, 0, history);
+				position = history;
+			}
+		}
+	}
+	
+	/*
+	 * Filters a whole array of samples in place, with the latency taken back out
+	 * so each output lines up with its input
+	 * Returns the filtered samples
+	 */
+	public double[] filter(double[] samples)
+	{
+		reset();
+		int latency = latency();
+		double[] tail = new double[latency];
+		process(samples, 0, samples.length);
+		process(tail, 0, latency);
+		
+		//the streamed output is the samples followed by the tail, delayed by latency
+		int shifted = Math.max(0, samples.length - latency);
+		if (shifted > 0)
+			System.arraycopy(samples, latency, samples, 0, shifted);
+		System.arraycopy(tail, latency - (samples.length - shifted), samples, shifted, samples.length - shifted);
+		return samples;
+	}
+	
+	public void reset()
+	{
+		Arrays.fill(input, 0);
+		Arrays.fill(output, 0);
+		position = taps - 1;
+	}
+	
+	/*
+	 * Convolves the full input buffer with the kernel
+	 * The first taps - 1 results wrap around the block and are thrown away; the
+	 * rest are the filtered samples of the block's new part
+	 */
+	private void convolveBlock()
+	{
+		double[] a = plan.buffer;
+		System.arraycopy(input, 0, a, 0, blockSize);
+		plan.fft.realForward(a);
+		
+		//packed layout: a[0] and a[1] are the real values at 0Hz and Nyquist
+		a[0] *= kernelSpectrum[0];
+		a[1] *= kernelSpectrum[1];
+		for (int k = 2; k < blockSize; k += 2)
+		{
+			double re = a[k];
+			double im = a[k + 1];
+			a[k] = re * kernelSpectrum[k] - im * kernelSpectrum[k + 1];
+			a[k + 1] = re * kernelSpectrum[k + 1] + im * kernelSpectrum[k];
+		}
+		plan.fft.realInverse(a, true);
+		System.arraycopy(a, taps - 1, output, 0, output.length);
+	}
+}
@@ -0,0 +1,117 @@
+package pitchTracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * Measures how the parallel frequencyAnalysis scales with the number of threads
+ * Checks, with every detector and thread count, that the parallel result is exactly
+ * the serial one, then times the default detector
+ * Usage: java pitchTracking.ParallelAnalysisBenchmark [seconds of audio] [max threads]
+ */
+public class ParallelAnalysisBenchmark {
+	
+	public static final float SAMPLE_RATE = 44100;
+	public static final int ROUNDS = 5;	//timed rounds per thread count, after warmup
+	
+	public static void main(String[] args)
+	{
+		int seconds = 120;
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 0)
+			seconds = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			maxThreads = Integer.parseInt(args[1]);
+		if (maxThreads < 1)
+		{
+			System.out.println("ParallelAnalysisBenchmark: max threads must be at least 1");
+			System.exit(1);
+		}
+		
+		double[] samples = sweep(100, 900, (int) (seconds * SAMPLE_RATE));
+		MultiplePitchRead pitchReader = new MultiplePitchRead(SAMPLE_RATE, SAMPLE_RATE, "benchmark");
+		
+		double[] serial = pitchReader.frequencyAnalysis(samples);
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			pitchReader.frequencyAnalysis(samples);	//warms up the JIT
+		}
+		long start = System.nanoTime();
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			pitchReader.frequencyAnalysis(samples);
+		}
+		double serialMillis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+		
+		System.out.println(seconds + " s of audio, " + serial.length + " blocks");
+		System.out.printf("serial     %10.1f ms%n", serialMillis);
+		
+		//powers of two, then every available thread if that isn't one
+		List<Integer> threadCounts = new ArrayList<Integer>();
+		for (int threads = 1; threads <= maxThreads; threads *= 2)
+		{
+			threadCounts.add(threads);
+		}
+		if (threadCounts.get(threadCounts.size() - 1) != maxThreads)
+			threadCounts.add(maxThreads);
+		
+		//detectors that follow the blocks have to come out the same however the blocks are split
+		MultiplePitchRead checkReader = new MultiplePitchRead(SAMPLE_RATE, SAMPLE_RATE, "benchmark");
+		for (String detectorName : MultiplePitchRead.DETECTORS)
+		{
+			checkReader.detector = checkReader.newDetector(detectorName);
+			double[] expected = checkReader.frequencyAnalysis(samples);
+			for (int threads : threadCounts)
+			{
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				double[] parallel = checkReader.frequencyAnalysis(samples, pool);
+				pool.shutdown();
+				if (!Arrays.equals(expected, parallel))
+				{
+					System.out.println("Parallel " + detectorName + " result with " + threads + " threads differs from serial");
+					System.exit(1);
+				}
+			}
+		}
+		System.out.println("Parallel results match serial for " + MultiplePitchRead.DETECTORS.length + " detectors");
+		
+		for (int threads : threadCounts)
+		{
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			double[] parallel = pitchReader.frequencyAnalysis(samples, pool);
+			if (!Arrays.equals(serial, parallel))
+			{
+				System.out.println("Parallel result with " + threads + " threads differs from serial");
+				System.exit(1);
+			}
+			
+			start = System.nanoTime();
+			for (int round = 0; round < ROUNDS; round++)
+			{
+				pitchReader.frequencyAnalysis(samples, pool);
+			}
+			double millis = (System.nanoTime() - start) / 1e6 / ROUNDS;
+			pool.shutdown();
+			
+			System.out.printf("%2d threads %10.1f ms %8.2fx%n", threads, millis, serialMillis / millis);
+		}
+	}
+	
+	/*
+	 * Returns a sine sweep between two frequencies (-1 to 1), so every block has a different pitch
+	 */
+	private static double[] sweep(double from, double to, int length)
+	{
+		double[] samples = new double[length];
+		double phase = 0;
+		for (int i = 0; i < length; i++)
+		{
+			double frequency = from + (to - from) * i / length;
+			phase += 2 * Math.PI * frequency / SAMPLE_RATE;
+			samples[i] = Math.sin(phase);
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,54 @@
+package pitchTracking;
+
+/*
+ * Ways of estimating where a spectral peak really is from the bin it landed
+ * in and its two neighbours
+ * Each returns an offset from the center bin, between -0.5 and 0.5
+ */
+public enum PeakInterpolation {
+	
+	//the peak is the center of its bin, resolution is one bin
+	NONE {
+		public double offset(double left, double center, double right)
+		{
+			return 0;
+		}
+	},
+	
+	//fits a parabola through the three magnitudes
+	QUADRATIC {
+		public double offset(double left, double center, double right)
+		{
+			return vertex(left, center, right);
+		}
+	},
+	
+	//fits a parabola through the log magnitudes, exact for a Gaussian peak and
+	//very close for the main lobe of a Hamming or Blackman-Harris window
+	GAUSSIAN {
+		public double offset(double left, double center, double right)
+		{
+			if (left <= 0 || center <= 0 || right <= 0)
+				return vertex(left, center, right);
+			return vertex(Math.log(left), Math.log(center), Math.log(right));
+		}
+	};
+	
+	/*
+	 * Takes the magnitudes of the bins on either side of a peak and the peak itself
+	 * Returns how far the true peak is from the center bin, in bins
+	 */
+	public abstract double offset(double left, double center, double right);
+	
+	/*
+	 * Returns the offset of the vertex of the parabola through three evenly spaced points
+	 */
+	private static double vertex(double left, double center, double right)
+	{
+		double curve = left - 2 * center + right;
+		if (curve >= 0)
+			return 0;	//not a peak, so there is nothing to refine
+		double offset = 0.5 * (left - right) / curve;
+		return Math.max(-0.5, Math.min(0.5, offset));
+	}
+}
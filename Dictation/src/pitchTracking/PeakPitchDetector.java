@@ -0,0 +1,90 @@
+package pitchTracking;
+
+/*
+ * Takes the pitch of a block to be its strongest spectral peak below a maximum frequency
+ * The peak is interpolated between bins and can be refined further with a phase vocoder
+ */
+public class PeakPitchDetector extends SpectralPitchDetector {
+	
+	public final int hop;				//samples between consecutive blocks, for the phase vocoder
+	public final double maxFrequency;	//highest peak considered
+	
+	public PeakInterpolation interpolation = PeakInterpolation.GAUSSIAN;	//how the peak is placed between bins
+	public boolean phaseVocoder = false;	//refine each peak from the phase advance since the previous hop
+	
+	private PhaseVocoder vocoder;
+	
+	public PeakPitchDetector(float sampleRate, int blockSize, int hop, double maxFrequency)
+	{
+		super(sampleRate, blockSize);
+		this.hop = hop;
+		this.maxFrequency = maxFrequency;
+	}
+	
+	/*
+	 * Windows a copy of the block and performs FFT on it
+	 * Returns the frequency of the strongest peak
+	 */
+	public double detect(double[] samples, int offset)
+	{
+		double[] spectrum = spectrum(samples, offset);
+		double bin = peakBin(spectrum);
+		if (phaseVocoder)
+		{
+			if (vocoder == null)
+				vocoder = new PhaseVocoder(blockSize, hop, Spectrum.bins(maxFrequency, sampleRate, blockSize) + 1);
+			bin = vocoder.refine(spectrum, bin);
+		}
+		return Spectrum.frequency(bin, sampleRate, blockSize);
+	}
+	
+	/*
+	 * Takes the packed spectrum of one block
+	 * Finds the strongest bin between 0Hz and the maximum frequency
+	 * Returns its position, interpolated between bins
+	 */
+	public double peakBin(double[] spectrum)
+	{
+		int n = blockSize;
+		int bins = Spectrum.bins(maxFrequency, sampleRate, n);
+		int maxBin = 0;
+		double maxPower = -1;
+		for (int k = 1; k < bins; k++)	//skip the DC bin
+		{
+			//comparing squared magnitudes picks the same bin without a sqrt per bin
+			double power = Spectrum.power(spectrum, n, k);
+			if (maxPower < power)
+			{
+				maxPower = power;
+				maxBin = k;
+			}
+		}
+		if (maxBin == 0 || maxBin >= n / 2)
+			return maxBin;
+		
+		return maxBin + interpolation.offset(
+				Spectrum.magnitude(spectrum, n, maxBin - 1),
+				Math.sqrt(maxPower),
+				Spectrum.magnitude(spectrum, n, maxBin + 1));
+	}
+	
+	public boolean usesPreviousBlock()
+	{
+		return phaseVocoder;
+	}
+	
+	public void reset()
+	{
+		if (vocoder != null)
+			vocoder.reset();
+	}
+	
+	public PitchDetector copy()
+	{
+		PeakPitchDetector copy = new PeakPitchDetector(sampleRate, blockSize, hop, maxFrequency);
+		copy.window = window;
+		copy.interpolation = interpolation;
+		copy.phaseVocoder = phaseVocoder;
+		return copy;
+	}
+}
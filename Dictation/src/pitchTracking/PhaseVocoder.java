@@ -0,0 +1,69 @@
+package pitchTracking;
+
+/*
+ * Refines a peak frequency from how much its phase advanced since the previous hop
+ * A steady sinusoid advances by exactly 2 * pi * f * hop / sampleRate between
+ * hops, so the measured advance pins f down far more finely than the bin spacing
+ * Keeps the phases of the previous frame, so one vocoder follows one stream of
+ * consecutive blocks and is not thread-safe
+ */
+public class PhaseVocoder {
+	
+	public final int size;		//samples per block
+	public final int hop;		//samples between the starts of consecutive blocks
+	public final int bins;		//bins whose phases are tracked
+	
+	private final double[] phases;	//phases of the previous frame
+	private boolean primed;			//whether there is a previous frame yet
+	
+	public PhaseVocoder(int size, int hop, int bins)
+	{
+		this.size = size;
+		this.hop = hop;
+		this.bins = bins;
+		this.phases = new double[bins];
+	}
+	
+	/*
+	 * Takes the packed spectrum of the next block and the (fractional) bin of its peak
+	 * Remembers this frame's phases for the next call
+	 * Returns the refined bin, or the given bin when there is no previous frame
+	 * or the phase disagrees with it by more than a bin (a new note, say)
+	 */
+	public double refine(double[] spectrum, double bin)
+	{
+		int k = (int) Math.round(bin);
+		double refined = bin;
+		if (primed && k > 0 && k < bins)
+		{
+			double expected = 2 * Math.PI * k * hop / size;
+			double deviation = wrap(Spectrum.phase(spectrum, size, k) - phases[k] - expected);
+			double estimate = k + deviation * size / (2 * Math.PI * hop);
+			if (Math.abs(estimate - bin) < 1)
+				refined = estimate;
+		}
+		
+		for (int i = 0; i < bins; i++)
+		{
+			phases[i] = Spectrum.phase(spectrum, size, i);
+		}
+		primed = true;
+		return refined;
+	}
+	
+	/*
+	 * Forgets the previous frame, for when the next block doesn't follow on from the last
+	 */
+	public void reset()
+	{
+		primed = false;
+	}
+	
+	/*
+	 * Wraps a phase into -pi to pi
+	 */
+	private static double wrap(double phase)
+	{
+		return phase - 2 * Math.PI * Math.floor((phase + Math.PI) / (2 * Math.PI));
+	}
+}
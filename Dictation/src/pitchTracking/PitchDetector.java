@@ -0,0 +1,37 @@
+package pitchTracking;
+
+/*
+ * Finds the pitch of one block of samples
+ * A detector keeps its own FFT plans and scratch buffers, so it is not
+ * thread-safe; copy() gives another thread a detector of its own
+ */
+public interface PitchDetector {
+	
+	/*
+	 * Returns the number of samples in the blocks this detector takes
+	 */
+	int blockSize();
+	
+	/*
+	 * Takes the block of blockSize() samples starting at offset
+	 * The samples themselves are left alone
+	 * Returns the pitch of the block in Hz, or NaN if it has no pitch
+	 */
+	double detect(double[] samples, int offset);
+	
+	/*
+	 * Returns whether detect uses what it saw in the previous block
+	 * Such a detector must be given consecutive blocks in order
+	 */
+	boolean usesPreviousBlock();
+	
+	/*
+	 * Forgets the previous block, before a pass over new audio
+	 */
+	void reset();
+	
+	/*
+	 * Returns a new detector with the same settings and its own buffers
+	 */
+	PitchDetector copy();
+}
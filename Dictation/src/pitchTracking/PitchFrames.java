@@ -0,0 +1,93 @@
+package pitchTracking;
+
+import java.util.Arrays;
+
+/*
+ * Several pitches per frame, stored as flat parallel arrays
+ * Frame f holds counts[f] peaks, strongest first, at index f * maxPeaks + i
+ * of frequencies and magnitudes; unused slots hold NaN and 0
+ */
+public class PitchFrames {
+	
+	public final int maxPeaks;		//most peaks kept per frame
+	public float[] frequencies;		//in Hz
+	public float[] magnitudes;
+	public byte[] counts;			//peaks found in each frame
+	public int frames;				//frames filled in so far
+	
+	public PitchFrames(int maxPeaks, int capacity)
+	{
+		if (maxPeaks < 1 || maxPeaks > Byte.MAX_VALUE)
+			throw new IllegalArgumentException("maxPeaks must be between 1 and " + Byte.MAX_VALUE);
+		this.maxPeaks = maxPeaks;
+		frequencies = new float[maxPeaks * capacity];
+		magnitudes = new float[maxPeaks * capacity];
+		counts = new byte[capacity];
+	}
+	
+	/*
+	 * Returns the number of peaks in a frame
+	 */
+	public int count(int frame)
+	{
+		return counts[frame];
+	}
+	
+	/*
+	 * Returns the frequency of the i'th strongest peak of a frame, or NaN if it has fewer peaks
+	 */
+	public float frequency(int frame, int i)
+	{
+		return frequencies[frame * maxPeaks + i];
+	}
+	
+	/*
+	 * Returns the magnitude of the i'th strongest peak of a frame, or 0 if it has fewer peaks
+	 */
+	public float magnitude(int frame, int i)
+	{
+		return magnitudes[frame * maxPeaks + i];
+	}
+	
+	/*
+	 * Makes room for one more frame and returns its index, for extractors to fill in
+	 * The arrays grow by half when they are full
+	 */
+	public int addFrame()
+	{
+		if (frames == counts.length)
+		{
+			int capacity = Math.max(16, frames + frames / 2);
+			frequencies = Arrays.copyOf(frequencies, capacity * maxPeaks);
+			magnitudes = Arrays.copyOf(magnitudes, capacity * maxPeaks);
+			counts = Arrays.copyOf(counts, capacity);
+		}
+		return frames++;
+	}
+	
+	/*
+	 * Adds a frame with no peaks, for a block too quiet to have a pitch
+	 * Returns its index
+	 */
+	public int addEmptyFrame()
+	{
+		int frame = addFrame();
+		Arrays.fill(frequencies, frame * maxPeaks, (frame + 1) * maxPeaks, Float.NaN);
+		Arrays.fill(magnitudes, frame * maxPeaks, (frame + 1) * maxPeaks, 0);
+		counts[frame] = 0;
+		return frame;
+	}
+	
+	/*
+	 * Returns the strongest pitch of every frame, NaN where a frame has none
+	 */
+	public double[] strongest()
+	{
+		double[] pitches = new double[frames];
+		for (int f = 0; f < frames; f++)
+		{
+			pitches[f] = counts[f] > 0 ? frequency(f, 0) : Double.NaN;
+		}
+		return pitches;
+	}
+}
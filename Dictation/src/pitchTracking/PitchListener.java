@@ -0,0 +1,14 @@
+package pitchTracking;
+
+/*
+ * Receives pitches as a tracker finds them
+ */
+public interface PitchListener {
+	
+	/*
+	 * Called once per block, on the tracker's thread
+	 * Takes the position of the first sample of the block, counted from the start
+	 * of the audio the tracker has seen, and its pitch in Hz (NaN if it has none)
+	 */
+	void pitchDetected(long position, double frequency);
+}
@@ -0,0 +1,173 @@
+package pitchTracking;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/*
+ * Keeps pitch tracks on disk so a sound that has been analyzed once never needs it again
+ * A track is found by the SHA-256 of the sound file's contents together with everything
+ * that shapes the analysis (sample rate, block size, hop and a settings string naming
+ * the detector and filter), so renaming a file keeps its tracks and changing any setting
+ * makes new ones
+ * Each track is one small file: a header repeating those parameters, then the
+ * frequencies as floats, read and written whole through a FileChannel
+ */
+public class PitchTrackCache {
+	
+	public static final int MAGIC = 0x5054524B;	//"PTRK"
+	public static final int VERSION = 1;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int HASH_CHUNK = 1 << 16;	//bytes read at a time while hashing
+	
+	public final File directory;
+	
+	public PitchTrackCache(File directory)
+	{
+		this.directory = directory;
+	}
+	
+	/*
+	 * Returns the SHA-256 of a file's contents, in hex
+	 */
+	public static String contentHash(File file) throws IOException
+	{
+		MessageDigest digest = sha256();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_CHUNK);
+			while (channel.read(buffer) != -1)
+			{
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		} finally {
+			channel.close();
+		}
+		return hex(digest.digest());
+	}
+	
+	/*
+	 * Returns the cached track for a sound and analysis, or null if there is none
+	 * (a damaged or mismatched entry counts as none)
+	 */
+	public double[] load(String contentHash, float sampleRate, int blockSize, int hop, String settings)
+	{
+		File entry = entry(contentHash, sampleRate, blockSize, hop, settings);
+		if (!entry.isFile())
+			return null;
+		try {
+			FileChannel channel = FileChannel.open(entry.toPath(), StandardOpenOption.READ);
+			ByteBuffer buffer;
+			try {
+				buffer = ByteBuffer.allocate((int) channel.size());
+				while (buffer.hasRemaining())
+				{
+					if (channel.read(buffer) == -1)
+						break;
+				}
+			} finally {
+				channel.close();
+			}
+			buffer.flip();
+			
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+					|| buffer.getFloat() != sampleRate || buffer.getInt() != blockSize || buffer.getInt() != hop)
+				return null;
+			byte[] name = new byte[buffer.getShort() & 0xffff];
+			buffer.get(name);
+			if (!new String(name, UTF8).equals(settings))
+				return null;
+			
+			float[] track = new float[buffer.getInt()];
+			buffer.asFloatBuffer().get(track);
+			double[] frequencies = new double[track.length];
+			for (int i = 0; i < track.length; i++)
+			{
+				frequencies[i] = track[i];
+			}
+			return frequencies;
+		} catch (IOException e) {
+			return null;
+		} catch (RuntimeException e) {	//a truncated entry underflows the buffer
+			return null;
+		}
+	}
+	
+	/*
+	 * Writes a track for a sound and analysis, replacing any there was
+	 * The entry is written aside and moved into place, so a reader never sees half of one
+	 */
+	public void store(String contentHash, float sampleRate, int blockSize, int hop, String settings, double[] frequencies) throws IOException
+	{
+		byte[] name = settings.getBytes(UTF8);
+		ByteBuffer buffer = ByteBuffer.allocate(26 + name.length + 4 * frequencies.length);
+		buffer.putInt(MAGIC).putInt(VERSION).putFloat(sampleRate).putInt(blockSize).putInt(hop);
+		buffer.putShort((short) name.length).put(name);
+		buffer.putInt(frequencies.length);
+		for (double frequency : frequencies)
+		{
+			buffer.putFloat((float) frequency);
+		}
+		buffer.flip();
+		
+		directory.mkdirs();
+		File entry = entry(contentHash, sampleRate, blockSize, hop, settings);
+		File temporary = File.createTempFile(entry.getName(), ".tmp", directory);
+		boolean moved = false;
+		try {
+			FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE);
+			try {
+				while (buffer.hasRemaining())
+				{
+					channel.write(buffer);
+				}
+			} finally {
+				channel.close();
+			}
+			Files.move(temporary.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			moved = true;
+		} finally {
+			//a failed write or move leaves no half written file behind
+			if (!moved)
+				Files.deleteIfExists(temporary.toPath());
+		}
+	}
+	
+	/*
+	 * Returns the file a track is kept in
+	 */
+	public File entry(String contentHash, float sampleRate, int blockSize, int hop, String settings)
+	{
+		String key = contentHash + "|" + sampleRate + "|" + blockSize + "|" + hop + "|" + settings;
+		return new File(directory, hex(sha256().digest(key.getBytes(UTF8))) + ".track");
+	}
+	
+	private static MessageDigest sha256()
+	{
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);	//every JVM has SHA-256
+		}
+	}
+	
+	private static String hex(byte[] bytes)
+	{
+		StringBuilder s = new StringBuilder(2 * bytes.length);
+		for (byte b : bytes)
+		{
+			s.append(String.format("%02x", b & 0xff));
+		}
+		return s.toString();
+	}
+}
@@ -0,0 +1,129 @@
+package pitchTracking;
+
+import java.util.Arrays;
+
+/*
+ * Lowers the sample rate by a whole factor, with an anti-alias FIR filter first
+ * The filter is split into factor polyphase branches: branch p holds taps p,
+ * p + factor, p + 2 factor, ... and only ever sees every factor-th input, the ones
+ * those taps meet when an output is due
+ * So each input goes into one branch's history and each output is the sum of one
+ * short dot product per branch, about taps / factor multiplies per input, where
+ * filtering first and then dropping samples would cost taps per input
+ * Works on a stream, carrying its branch histories from one block to the next
+ */
+public class PolyphaseDecimator {
+	
+	public static final double ATTENUATION_DB = 80;	//aliases are pushed down at least this far
+	
+	public final int factor;
+	public final double[] taps;
+	
+	private final int length;			//taps in each branch, the last ones zero if taps.length is not a multiple of factor
+	private final double[][] branches;	//branches[p][j] is taps[j * factor + p]
+	private final double[][] history;	//each branch's last length inputs, stored twice over so a dot product never wraps
+	private int head;					//where each branch's next input goes in its history
+	private int phase;					//inputs taken since the last output
+	
+	public PolyphaseDecimator(int factor, double[] taps)
+	{
+		this.factor = factor;
+		this.taps = taps;
+		this.length = (taps.length + factor - 1) / factor;
+		this.branches = new double[factor][length];
+		for (int k = 0; k < taps.length; k++)
+		{
+			branches[k % factor][k / factor] = taps[k];
+		}
+		this.history = new double[factor][2 * length];
+	}
+	
+	/*
+	 * Returns a decimator for pitch analysis: it keeps everything up to maxFrequency
+	 * and stops everything that would alias at the new rate
+	 */
+	public static PolyphaseDecimator forPitch(float sampleRate, double maxFrequency, int factor)
+	{
+		double nyquist = sampleRate / factor / 2;
+		if (nyquist <= maxFrequency)
+			throw new IllegalArgumentException("Decimating by " + factor + " would lose frequencies up to " + maxFrequency + "Hz");
+		return new PolyphaseDecimator(factor, FirDesign.kaiserLowPass(maxFrequency, nyquist, ATTENUATION_DB, sampleRate));
+	}
+	
+	/*
+	 * Returns the largest factor that brings the sample rate down to no less than
+	 * minRate, the rate a pitch analysis up to some maximum frequency needs
+	 */
+	public static int factorFor(float sampleRate, double minRate)
+	{
+		return Math.max(1, (int) (sampleRate / minRate));
+	}
+	
+	/*
+	 * Returns the delay the filter adds, in input samples
+	 */
+	public double delay()
+	{
+		return (taps.length - 1) / 2.0;
+	}
+	
+	/*
+	 * Takes length input samples starting at offset
+	 * Writes the outputs they complete into out starting at outOffset
+	 * Returns the number of outputs written, about length / factor
+	 */
+	public int process(double[] in, int offset, int length, double[] out, int outOffset)
+	{
+		int n = this.length;
+		int written = 0;
+		for (int i = 0; i < length; i++)
+		{
+			//an input p samples before the next output meets taps p, p + factor, ...
+			//so it goes to branch p
+			double x = in[offset + i];
+			double[] branchHistory = history[factor - 1 - phase];
+			branchHistory[head] = x;
+			branchHistory[head + n] = x;
+			
+			if (++phase == factor)
+			{
+				//history[p][head + 1 .. head + n] holds branch p's inputs, newest last
+				phase = 0;
+				double sum = 0;
+				for (int p = 0; p < factor; p++)
+				{
+					double[] branch = branches[p];
+					double[] h = history[p];
+					for (int j = 0; j < n; j++)
+					{
+						sum += branch[j] * h[head + n - j];
+					}
+				}
+				head = head + 1 == n ? 0 : head + 1;
+				out[outOffset + written++] = sum;
+			}
+		}
+		return written;
+	}
+	
+	/*
+	 * Decimates a whole array of samples
+	 * Returns the decimated samples
+	 */
+	public double[] decimate(double[] samples)
+	{
+		double[] out = new double[samples.length / factor + 1];
+		int count = process(samples, 0, samples.length, out, 0);
+		return Arrays.copyOf(out, count);
+	}
+	
+	public void reset()
+	{
+		for (double[] h : history)
+		{
+			Arrays.fill(h, 0);
+		}
+		head = 0;
+		phase = 0;
+	}
+}
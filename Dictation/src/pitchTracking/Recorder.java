@@ -12,6 +12,8 @@ import javax.sound.sampled.AudioFileFormat;
 
 public class Recorder extends Thread {
 	
+	public static final int SLIDING_HOP = 147;	//samples between pitches with -sliding, about 3ms at 44.1kHz
+	
 	private TargetDataLine line;
 	private AudioFileFormat.Type targetType;
 	private AudioInputStream audioInputStream;
@@ -24,6 +26,17 @@ public class Recorder extends Thread {
 		outputFile = file;
 	}
 	
+	/*
+	 * A recorder that also publishes every captured frame, mixed down to mono, to a ring
+	 * so it can be analyzed live while it is written to the file
+	 */
+	public Recorder(TargetDataLine tLine, AudioFileFormat.Type type, File file, SampleRingBuffer ring) {
+		line = tLine;
+		audioInputStream = new AudioInputStream(new CaptureInputStream(line, ring), line.getFormat(), AudioSystem.NOT_SPECIFIED);
+		targetType = type;
+		outputFile = file;
+	}
+	
 	/*
 	 * a method that starts the recording
 	 */
@@ -89,7 +102,7 @@ public class Recorder extends Thread {
 	private static void printUsageAndExit() {
 		out("Recorder: usage: ");
 		out("\tjava Recorder -h");
-		out("\tjava Recorder <audioFile>");
+		out("\tjava Recorder [-live | -sliding] <audioFile>");
 		System.exit(0);
 	}
 	
@@ -99,16 +112,18 @@ public class Recorder extends Thread {
 	
 	public static void main(String[] args) {
 		
-		if (args.length != 1 || args[0].equals("-h")) {
+		boolean sliding = args.length == 2 && args[0].equals("-sliding");
+		boolean live = args.length == 2 && (args[0].equals("-live") || sliding);
+		if ((args.length != 1 && !live) || args[0].equals("-h")) {
 			printUsageAndExit();
 		}
 		
 		/*
-		 * We have made sure that there is only one command line argument.  This is taken as the 
-		 * filename of the soundfile to store to
+		 * We have made sure that there is only one command line argument besides -live or -sliding.  This is
+		 * taken as the filename of the soundfile to store to
 		 */
 		
-		String strFilename = args[0];
+		String strFilename = args[args.length - 1];
 		File outputFile = new File(strFilename);
 		
 		/*
@@ -147,10 +162,48 @@ public class Recorder extends Thread {
 		 * and stopping the recording, reading audio data from the TargetDataLine
 		 * and writing the data to a file
 		 */
-		Recorder recorder = new Recorder(
-				targetDataLine,
-				targetType,
-				outputFile);
+		Recorder recorder;
+		SampleConsumer[] stages = null;
+		LevelGraphSink levels = null;
+		NoteSegmenter notes = null;
+		if (live) {
+			/*
+			 * In live mode the recorder also publishes to a ring of samples.  Each stage reads
+			 * it on its own thread: a filter stage low-passes the samples into a second ring,
+			 * a tracker finds the pitch of each sliding block of those as soon as it has
+			 * arrived and prints each note once it ends, and a sink keeps the level of
+			 * each hop to graph at the end
+			 * With -sliding the tracker keeps a sliding DFT instead, and finds a pitch every
+			 * SLIDING_HOP samples rather than every BLOCK_INC
+			 */
+			final float sampleRate = audioFormat.getSampleRate();
+			int hop = sliding ? SLIDING_HOP : MultiplePitchRead.BLOCK_INC;
+			SampleRingBuffer captured = new SampleRingBuffer((int) sampleRate);
+			SampleRingBuffer filtered = new SampleRingBuffer((int) sampleRate);
+			PitchDetector found = sliding ? new SlidingPitchDetector(sampleRate, MultiplePitchRead.BLOCKSIZE, hop, MultiplePitchRead.MAX_FREQ)
+					: new PeakPitchDetector(sampleRate, MultiplePitchRead.BLOCKSIZE, hop, MultiplePitchRead.MAX_FREQ);
+			PitchDetector detector = new GatedPitchDetector(found, hop, EnergyGate.DEFAULT_THRESHOLD_DB);
+			notes = new NoteSegmenter(sampleRate, MultiplePitchRead.BLOCKSIZE, hop, detector, new NoteListener() {
+				public void noteDetected(double onset, double duration, int midiNote, double confidence) {
+					out(String.format("%8.2fs %6.2fs %-4s %4.2f", onset, duration, NoteSegmenter.noteName(midiNote), confidence));
+				}
+			});
+			LivePitchTracker tracker = new LivePitchTracker(filtered, detector, hop, notes);
+			levels = new LevelGraphSink(captured, MultiplePitchRead.BLOCK_INC);
+			
+			//upstream first, so stopping in this order lets each stage drain into the next
+			stages = new SampleConsumer[] {
+					new FilterStage(captured, BiquadCascade.butterworthLowPass(4, MultiplePitchRead.MAX_FREQ, sampleRate), filtered),
+					tracker,
+					levels };
+			recorder = new Recorder(targetDataLine, targetType, outputFile, captured);
+		}
+		else {
+			recorder = new Recorder(
+					targetDataLine,
+					targetType,
+					outputFile);
+		}
 		
 		/*
 		 * We are waiting for the user to press ENTER to start the recording. (You might
@@ -168,6 +221,11 @@ public class Recorder extends Thread {
 		 * Here, the recording actually starts.
 		 */
 		recorder.start();
+		if (stages != null) {
+			for (SampleConsumer stage : stages) {
+				stage.start();
+			}
+		}
 		out("Recording...");
 		
 		/*
@@ -187,5 +245,20 @@ public class Recorder extends Thread {
 		 */
 		recorder.stopRecording();
 		out("Recording stopped.");
+		
+		if (stages != null) {
+			try {
+				recorder.join();
+				for (SampleConsumer stage : stages) {
+					stage.stop();
+				}
+				notes.finish();
+			}
+			catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			String name = outputFile.getName().replaceFirst("\\.[^.]*$", "");
+			levels.graph(new MultiplePitchRead(audioFormat.getSampleRate(), audioFormat.getFrameRate(), name), name + " Levels");
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package pitchTracking;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * A stage that reads samples from a ring on its own thread
+ * Reads whatever has been published in chunks and hands each chunk to consume
+ * Stopping lets it finish the samples already published first
+ */
+public abstract class SampleConsumer implements Runnable {
+	
+	public static final long IDLE_NANOS = 1000000;	//how long to sleep when waiting for samples, 1ms
+	public static final int CHUNK = 1024;			//most samples handed over at once
+	
+	protected final SampleRingBuffer.Reader reader;
+	
+	private final double[] chunk = new double[CHUNK];
+	private final String name;
+	private volatile boolean running = true;
+	private Thread thread;
+	
+	protected SampleConsumer(SampleRingBuffer ring, String name)
+	{
+		this.reader = ring.newReader();
+		this.name = name;
+	}
+	
+	/*
+	 * Takes the next samples from the ring, in order
+	 * The array is reused, so the samples must be copied to be kept
+	 */
+	protected abstract void consume(double[] samples, int count);
+	
+	/*
+	 * Called on the stage's thread after the last samples have been consumed
+	 */
+	protected void finish()
+	{
+	}
+	
+	/*
+	 * Starts the stage on a new thread
+	 */
+	public void start()
+	{
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/*
+	 * Stops the stage once the samples already published have been consumed
+	 * and waits for its thread to finish
+	 */
+	public void stop() throws InterruptedException
+	{
+		running = false;
+		if (thread != null)
+		{
+			LockSupport.unpark(thread);
+			thread.join();
+		}
+	}
+	
+	public void run()
+	{
+		while (true)
+		{
+			//read the flag first, so samples published before stop() are still seen
+			boolean stopping = !running;
+			int count = reader.read(chunk, 0, CHUNK);
+			if (count > 0)
+			{
+				consume(chunk, count);
+			}
+			else if (stopping)
+			{
+				break;
+			}
+			else
+			{
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+		finish();
+	}
+}
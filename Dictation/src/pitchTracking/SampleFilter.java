@@ -0,0 +1,19 @@
+package pitchTracking;
+
+/*
+ * A filter that works on a stream of samples in place, block by block
+ * Its state carries over from one block to the next, so a stream can be cut
+ * into blocks of any size and come out the same
+ */
+public interface SampleFilter {
+	
+	/*
+	 * Filters length samples starting at offset in place
+	 */
+	void process(double[] samples, int offset, int length);
+	
+	/*
+	 * Forgets the stream so far, before filtering a new one
+	 */
+	void reset();
+}
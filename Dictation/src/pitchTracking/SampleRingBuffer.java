@@ -0,0 +1,168 @@
+package pitchTracking;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * A lock-free ring of samples written by one producer and read by any number of readers
+ * Every reader keeps its own sequence (a count of samples since the ring was made, so it
+ * never wraps), in the style of a disruptor, and reads at its own pace
+ * The producer never waits for readers: a reader that falls a whole ring behind loses the
+ * samples that were overwritten, skips to the oldest ones still there and counts the loss,
+ * so a slow sink can't stall capture
+ * Nothing is allocated after construction
+ * Each sample is kept as its raw bits in an AtomicLongArray and written and read as a
+ * volatile, so the samples, claimed and cursor all fall in one order: a reader that saw
+ * any overwritten sample is bound to see the claim that announced it when it checks
+ * afterwards, and never hands on a sample torn by the producer
+ * At audio rates the cost of that ordering is negligible
+ */
+public class SampleRingBuffer {
+	
+	private final AtomicLongArray samples;	//Double.doubleToRawLongBits of each sample
+	private final int capacity;
+	private final int mask;					//capacity - 1, the capacity being a power of two
+	private final AtomicLong claimed = new AtomicLong();	//end of the samples the producer is writing
+	private final AtomicLong cursor = new AtomicLong();		//end of the samples published to readers
+	
+	/*
+	 * Makes a ring that holds at least capacity samples
+	 */
+	public SampleRingBuffer(int capacity)
+	{
+		int size = 1;
+		while (size < capacity)
+			size *= 2;
+		samples = new AtomicLongArray(size);
+		this.capacity = size;
+		mask = size - 1;
+	}
+	
+	public int capacity()
+	{
+		return capacity;
+	}
+	
+	/*
+	 * Returns the sequence just past the last published sample
+	 */
+	public long cursor()
+	{
+		return cursor.get();
+	}
+	
+	/*
+	 * Producer side: publishes length samples, overwriting the oldest if need be
+	 * Must only be called from one thread
+	 */
+	public void publish(double[] src, int offset, int length)
+	{
+		while (length > 0)
+		{
+			//never overwrite more than a ring at once, so readers can tell what they lost
+			int count = Math.min(length, capacity);
+			long head = cursor.get();
+			
+			//announce the overwrite before making it, so readers copying the old samples notice
+			claimed.set(head + count);
+			for (int i = 0; i < count; i++)
+			{
+				samples.set((int) (head + i) & mask, Double.doubleToRawLongBits(src[offset + i]));
+			}
+			cursor.set(head + count);
+			
+			offset += count;
+			length -= count;
+		}
+	}
+	
+	/*
+	 * Returns a reader that starts with the next sample to be published
+	 */
+	public Reader newReader()
+	{
+		return new Reader(cursor.get());
+	}
+	
+	/*
+	 * One reader's position in the ring
+	 * A reader is meant for a single thread
+	 */
+	public class Reader {
+		
+		private long sequence;	//next sample to read
+		private long lost;		//samples overwritten before they could be read
+		
+		private Reader(long sequence)
+		{
+			this.sequence = sequence;
+		}
+		
+		/*
+		 * Returns the sequence of the next sample this reader will read
+		 */
+		public long sequence()
+		{
+			return sequence;
+		}
+		
+		/*
+		 * Returns the number of samples published but not yet read, at most a ring's worth
+		 */
+		public int available()
+		{
+			return (int) Math.min(cursor.get() - sequence, capacity);
+		}
+		
+		/*
+		 * Returns the total number of samples this reader missed by falling too far behind
+		 */
+		public long lost()
+		{
+			return lost;
+		}
+		
+		/*
+		 * Copies up to length samples into dst, skipping any that were overwritten
+		 * Returns the number of samples read, 0 if there were none
+		 */
+		public int read(double[] dst, int offset, int length)
+		{
+			while (true)
+			{
+				long published = cursor.get();
+				skipTo(published - capacity);
+				int count = (int) Math.min(length, published - sequence);
+				if (count <= 0)
+					return 0;
+				
+				for (int i = 0; i < count; i++)
+				{
+					dst[offset + i] = Double.longBitsToDouble(samples.get((int) (sequence + i) & mask));
+				}
+				
+				//if the producer started overwriting what was just copied, drop it and go again
+				//(read after the samples, so any overwrite seen in them is seen here too)
+				long oldest = claimed.get() - capacity;
+				if (oldest <= sequence)
+				{
+					sequence += count;
+					return count;
+				}
+				skipTo(oldest);
+			}
+		}
+		
+		/*
+		 * Moves the reader up to a sequence if it is behind it, counting the samples skipped
+		 */
+		private void skipTo(long oldest)
+		{
+			if (sequence < oldest)
+			{
+				lost += oldest - sequence;
+				sequence = oldest;
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package pitchTracking;
+
+import java.util.Random;
+
+/*
+ * Checks that a reader falling behind a SampleRingBuffer never hands on an overwritten
+ * sample, only loses them
+ * A producer publishes every sample as its own sequence number, in chunks of random
+ * size, into a small ring; a reader that stalls now and then checks each sample it
+ * gets against the sequence it should be
+ * Exits with status 1 if any sample was wrong
+ * Usage: java pitchTracking.SampleRingBufferStressCheck [seconds] [ring capacity]
+ */
+public class SampleRingBufferStressCheck {
+	
+	public static final int MAX_CHUNK = 48;	//largest chunk the producer publishes or the reader asks for
+	
+	public static void main(String[] args) throws InterruptedException
+	{
+		int seconds = 5;
+		int capacity = 64;
+		if (args.length > 0)
+			seconds = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			capacity = Integer.parseInt(args[1]);
+		
+		final SampleRingBuffer ring = new SampleRingBuffer(capacity);
+		final SampleRingBuffer.Reader reader = ring.newReader();
+		final long end = System.nanoTime() + seconds * 1000000000L;
+		final long[] published = new long[1];
+		
+		Thread producer = new Thread(new Runnable() {
+			public void run()
+			{
+				Random random = new Random(1);
+				double[] chunk = new double[MAX_CHUNK];
+				long next = 0;
+				while (System.nanoTime() < end)
+				{
+					int count = 1 + random.nextInt(MAX_CHUNK);
+					for (int i = 0; i < count; i++)
+					{
+						chunk[i] = next + i;
+					}
+					ring.publish(chunk, 0, count);
+					next += count;
+				}
+				published[0] = next;
+			}
+		}, "producer");
+		
+		Random random = new Random(2);
+		double[] chunk = new double[MAX_CHUNK];
+		long read = 0;
+		long wrong = 0;
+		double sink = 0;
+		producer.start();
+		while (producer.isAlive() || reader.available() > 0)
+		{
+			int count = reader.read(chunk, 0, 1 + random.nextInt(MAX_CHUNK));
+			long first = reader.sequence() - count;
+			for (int i = 0; i < count; i++)
+			{
+				if (chunk[i] != first + i)
+					wrong++;
+			}
+			read += count;
+			
+			//lag behind now and then, so the producer laps the reader mid-copy
+			int lag = random.nextInt(8) == 0 ? random.nextInt(4 * MAX_CHUNK) : 0;
+			for (int i = 0; i < lag; i++)
+			{
+				sink += Math.sqrt(i);
+			}
+		}
+		producer.join();
+		
+		System.out.println(String.format("%d samples published, %d read, %d lost, %d wrong%s",
+				published[0], read, reader.lost(), wrong, sink == 42 ? " " : ""));
+		if (wrong > 0 || read + reader.lost() != published[0])
+		{
+			System.out.println("FAILED");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+}
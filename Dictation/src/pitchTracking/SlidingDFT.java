@@ -0,0 +1,223 @@
+package pitchTracking;
+
+import java.util.Arrays;
+
+/*
+ * Keeps the spectrum of the last blockSize samples up to date one sample at a time
+ * Each new sample shifts every bin's DFT by one: the sample leaving the window is
+ * swapped for the one arriving and the bin is rotated by one step of its frequency,
+ * which costs O(bins) per sample instead of an FFT of the whole block per hop
+ * Only the bins below the maximum frequency (and one past it) are kept
+ * The Hamming window is applied in the frequency domain, where it is a 3-tap kernel
+ * (0.54, -0.23, -0.23) across neighbouring bins, so the magnitudes are those of
+ * the windowed FFT that PeakPitchDetector takes of the same samples
+ * Rounding in the rotations builds up slowly, so every RESYNC_BLOCKS blocks the
+ * bins are recomputed outright by one FFT
+ * Resyncs fall on multiples of RESYNC_BLOCKS blocks of the stream, counted from the
+ * position given to reset, so copies started partway through (as the parallel
+ * frequencyAnalysis does) agree exactly with one run from the start once they pass a
+ * resync with a full window; before that they can differ by rounding, so such a copy
+ * starts far enough back to pass one (see SlidingPitchDetector.primingBlock)
+ */
+public class SlidingDFT {
+	
+	public static final int RESYNC_BLOCKS = 4;	//blocks of samples between FFT recomputations
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final double maxFrequency;	//highest peak considered
+	public final int bins;				//bins searched for the peak, 0 through bins - 1
+	
+	public PeakInterpolation interpolation = PeakInterpolation.GAUSSIAN;	//how the peak is placed between bins
+	
+	private final int kept;				//raw bins kept, two past the searched ones for the window kernel and interpolation
+	private final double[] cos;			//one step of rotation for each bin
+	private final double[] sin;
+	private final double[] re;			//unwindowed DFT of the window, oldest sample first
+	private final double[] im;
+	
+	private final double[] history;		//the window's samples, as a ring
+	private int position;				//where the next sample goes in history, which is also the oldest
+	private long count;					//samples pushed since the last reset
+	private long streamPosition;		//position in the stream of the next sample
+	private double energy;				//sum of squares of the window
+	
+	private FFTPlan plan;				//for resyncing, made on first use
+	
+	public SlidingDFT(float sampleRate, int blockSize, double maxFrequency)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.maxFrequency = maxFrequency;
+		this.bins = Spectrum.bins(maxFrequency, sampleRate, blockSize);
+		this.kept = Math.min(bins + 2, blockSize / 2 + 1);
+		this.cos = new double[kept];
+		this.sin = new double[kept];
+		for (int k = 0; k < kept; k++)
+		{
+			cos[k] = Math.cos(2 * Math.PI * k / blockSize);
+			sin[k] = Math.sin(2 * Math.PI * k / blockSize);
+		}
+		this.re = new double[kept];
+		this.im = new double[kept];
+		this.history = new double[blockSize];
+	}
+	
+	/*
+	 * Slides the window along by one sample
+	 */
+	public void push(double x)
+	{
+		double leaving = history[position];
+		history[position] = x;
+		position = position + 1 == blockSize ? 0 : position + 1;
+		count++;
+		streamPosition++;
+		energy += x * x - leaving * leaving;
+		
+		double delta = x - leaving;
+		for (int k = 0; k < kept; k++)
+		{
+			double r = re[k] + delta;
+			double i = im[k];
+			re[k] = r * cos[k] - i * sin[k];
+			im[k] = r * sin[k] + i * cos[k];
+		}
+		if (streamPosition % (RESYNC_BLOCKS * blockSize) == 0 && full())
+			resync();
+	}
+	
+	/*
+	 * Slides the window along by length samples starting at offset
+	 */
+	public void push(double[] samples, int offset, int length)
+	{
+		for (int i = offset; i < offset + length; i++)
+		{
+			push(samples[i]);
+		}
+	}
+	
+	/*
+	 * Returns whether a whole window of samples has been pushed since the last reset
+	 */
+	public boolean full()
+	{
+		return count >= blockSize;
+	}
+	
+	/*
+	 * Returns the RMS level of the window in dB below full scale
+	 */
+	public double level()
+	{
+		return 10 * Math.log10(Math.max(energy, 0) / blockSize);
+	}
+	
+	/*
+	 * Returns the magnitude of bin k of the Hamming windowed window, for k up to bins
+	 */
+	public double magnitude(int k)
+	{
+		//bin -1 is the mirror image of bin 1, and bin n/2 + 1 of bin n/2 - 1
+		double leftRe = k > 0 ? re[k - 1] : re[1];
+		double leftIm = k > 0 ? im[k - 1] : -im[1];
+		double rightRe = k + 1 < kept ? re[k + 1] : re[k - 1];
+		double rightIm = k + 1 < kept ? im[k + 1] : -im[k - 1];
+		double r = 0.54 * re[k] - 0.23 * (leftRe + rightRe);
+		double i = 0.54 * im[k] - 0.23 * (leftIm + rightIm);
+		return Math.sqrt(r * r + i * i);
+	}
+	
+	/*
+	 * Returns the position of the strongest bin between 0Hz and the maximum frequency,
+	 * interpolated between bins as PeakPitchDetector does
+	 */
+	public double peakBin()
+	{
+		int maxBin = 0;
+		double maxMagnitude = -1;
+		for (int k = 1; k < bins; k++)	//skip the DC bin
+		{
+			double magnitude = magnitude(k);
+			if (maxMagnitude < magnitude)
+			{
+				maxMagnitude = magnitude;
+				maxBin = k;
+			}
+		}
+		if (maxBin == 0 || maxBin >= blockSize / 2)
+			return maxBin;
+		return maxBin + interpolation.offset(magnitude(maxBin - 1), maxMagnitude, magnitude(maxBin + 1));
+	}
+	
+	/*
+	 * Returns the frequency of the strongest peak in the window
+	 */
+	public double peakFrequency()
+	{
+		return Spectrum.frequency(peakBin(), sampleRate, blockSize);
+	}
+	
+	public void reset()
+	{
+		reset(0);
+	}
+	
+	/*
+	 * Empties the window, taking the next sample pushed to be at streamPosition in the stream
+	 */
+	public void reset(long streamPosition)
+	{
+		Arrays.fill(history, 0);
+		Arrays.fill(re, 0);
+		Arrays.fill(im, 0);
+		position = 0;
+		count = 0;
+		this.streamPosition = streamPosition;
+		energy = 0;
+	}
+	
+	/*
+	 * Recomputes the bins and the energy from the samples in the window
+	 */
+	private void resync()
+	{
+		if (plan == null)
+			plan = new FFTPlan(blockSize);
+		double[] a = plan.buffer;
+		System.arraycopy(history, position, a, 0, blockSize - position);
+		System.arraycopy(history, 0, a, blockSize - position, position);
+		energy = 0;
+		for (int i = 0; i < blockSize; i++)
+		{
+			energy += a[i] * a[i];
+		}
+		plan.fft.realForward(a);
+		
+		//unpack the bins kept (see Spectrum for the layout)
+		for (int k = 0; k < kept; k++)
+		{
+			if (k == 0)
+			{
+				re[0] = a[0];
+				im[0] = 0;
+			}
+			else if (2 * k == blockSize)
+			{
+				re[k] = a[1];
+				im[k] = 0;
+			}
+			else if (2 * k == blockSize - 1)
+			{
+				re[k] = a[blockSize - 1];
+				im[k] = a[1];
+			}
+			else
+			{
+				re[k] = a[2 * k];
+				im[k] = a[2 * k + 1];
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package pitchTracking;
+
+/*
+ * Measures the per-frame cost of the sliding DFT against an FFT per block
+ * (PeakPitchDetector) at a range of hops, over the same gliding tone, and checks
+ * that both find the same pitch in every frame
+ * Usage: java pitchTracking.SlidingDFTBenchmark [seconds of audio] [block size]
+ */
+public class SlidingDFTBenchmark {
+	
+	public static final float SAMPLE_RATE = 44100;
+	public static final int[] HOPS = { 882, 441, 147, 49, 9, 1 };
+	public static final int ROUNDS = 3;	//timed rounds of each version, after one warmup round
+	
+	public static void main(String[] args)
+	{
+		int seconds = 10;
+		int blockSize = MultiplePitchRead.BLOCKSIZE;
+		if (args.length > 0)
+			seconds = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			blockSize = Integer.parseInt(args[1]);
+		
+		double[] samples = glide(220, 880, (int) (seconds * SAMPLE_RATE));
+		System.out.println("Block size " + blockSize + ", " + seconds + "s of audio");
+		System.out.println("   hop   frames/s     FFT us/frame  sliding us/frame  speedup  worst difference");
+		for (int hop : HOPS)
+		{
+			int blocks = (samples.length - blockSize) / hop + 1;
+			PeakPitchDetector fft = new PeakPitchDetector(SAMPLE_RATE, blockSize, hop, 1000);
+			SlidingPitchDetector sliding = new SlidingPitchDetector(SAMPLE_RATE, blockSize, hop, 1000);
+			
+			//an FFT per frame at a hop of one sample takes minutes, so it is only timed on a stretch
+			int fftBlocks = Math.min(blocks, 2000);
+			double fftNanos = 0;
+			double slidingNanos = 0;
+			double worst = 0;
+			double[] expected = new double[fftBlocks];
+			for (int round = 0; round <= ROUNDS; round++)
+			{
+				long start = System.nanoTime();
+				for (int b = 0; b < fftBlocks; b++)
+				{
+					expected[b] = fft.detect(samples, b * hop);
+				}
+				long fftTime = System.nanoTime() - start;
+				
+				sliding.reset();
+				start = System.nanoTime();
+				for (int b = 0; b < blocks; b++)
+				{
+					double frequency = sliding.detect(samples, b * hop);
+					if (b < fftBlocks)
+						worst = Math.max(worst, Math.abs(frequency - expected[b]));
+				}
+				long slidingTime = System.nanoTime() - start;
+				
+				//the first round only warms up the JIT
+				if (round > 0)
+				{
+					fftNanos += (double) fftTime / fftBlocks;
+					slidingNanos += (double) slidingTime / blocks;
+				}
+			}
+			double fftPerFrame = fftNanos / ROUNDS / 1000.0;
+			double slidingPerFrame = slidingNanos / ROUNDS / 1000.0;
+			System.out.printf("%6d %10.0f %16.2f %17.2f %8.2fx %14.2e Hz%n", hop, SAMPLE_RATE / hop,
+					fftPerFrame, slidingPerFrame, fftPerFrame / slidingPerFrame, worst);
+		}
+	}
+	
+	/*
+	 * Returns a sine wave gliding exponentially from one frequency to another (-1 to 1)
+	 */
+	private static double[] glide(double from, double to, int length)
+	{
+		double[] samples = new double[length];
+		double phase = 0;
+		for (int i = 0; i < length; i++)
+		{
+			samples[i] = Math.sin(phase);
+			phase += 2 * Math.PI * from * Math.pow(to / from, (double) i / length) / SAMPLE_RATE;
+		}
+		return samples;
+	}
+}
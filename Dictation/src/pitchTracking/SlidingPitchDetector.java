@@ -0,0 +1,76 @@
+package pitchTracking;
+
+/*
+ * Finds the same peak as PeakPitchDetector (Hamming window, interpolated between bins)
+ * from a sliding DFT instead of an FFT per block
+ * Only the hop of samples that arrived since the previous block is pushed through, at
+ * O(bins) per sample, so the cost per block falls with the hop and very small hops
+ * (a few samples apart, for low latency live) cost no more per second than large ones
+ * The first block after a reset is pushed through whole, and its offset is taken as
+ * its place in the stream, so the DFT resyncs at the same samples however far into
+ * the samples a copy starts; a copy started at primingBlock agrees exactly with one
+ * run from the start by the block it was asked for
+ */
+public class SlidingPitchDetector implements PitchDetector {
+	
+	public final int hop;			//samples between consecutive blocks
+	public final SlidingDFT dft;
+	
+	public SlidingPitchDetector(float sampleRate, int blockSize, int hop, double maxFrequency)
+	{
+		this.hop = hop;
+		this.dft = new SlidingDFT(sampleRate, blockSize, maxFrequency);
+	}
+	
+	public int blockSize()
+	{
+		return dft.blockSize;
+	}
+	
+	public double detect(double[] samples, int offset)
+	{
+		int n = dft.blockSize;
+		if (dft.full())
+			dft.push(samples, offset + n - hop, hop);
+		else
+		{
+			dft.reset(offset);
+			dft.push(samples, offset, n);
+		}
+		return dft.peakFrequency();
+	}
+	
+	/*
+	 * Returns the block a copy has to start from, after a reset, so that by the given
+	 * block it is in the same state as a detector run from block 0
+	 * That is the last block whose window ends by the last resync before the given
+	 * block: from there both have the bins the resync computes, and push the same samples
+	 */
+	public int primingBlock(int block)
+	{
+		int n = dft.blockSize;
+		long period = (long) SlidingDFT.RESYNC_BLOCKS * n;
+		long pushed = (long) (block - 1) * hop + n;	//stream position once the previous block is in
+		long resync = pushed / period * period;
+		if (block <= 0 || resync < n)
+			return 0;
+		return (int) ((resync - n) / hop);
+	}
+	
+	public boolean usesPreviousBlock()
+	{
+		return true;
+	}
+	
+	public void reset()
+	{
+		dft.reset();
+	}
+	
+	public PitchDetector copy()
+	{
+		SlidingPitchDetector copy = new SlidingPitchDetector(dft.sampleRate, dft.blockSize, hop, dft.maxFrequency);
+		copy.dft.interpolation = dft.interpolation;
+		return copy;
+	}
+}
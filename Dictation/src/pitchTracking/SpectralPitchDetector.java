@@ -0,0 +1,46 @@
+package pitchTracking;
+
+/*
+ * Base for the detectors that find the pitch in the spectrum of a windowed block
+ * Holds the FFT plan and window they share
+ */
+public abstract class SpectralPitchDetector implements PitchDetector {
+	
+	public final float sampleRate;
+	public final int blockSize;
+	
+	public WindowFunction window = WindowFunction.HAMMING;	//applied to each block before its FFT, null for none
+	
+	protected final FFTPlan plan;
+	
+	protected SpectralPitchDetector(float sampleRate, int blockSize)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.plan = new FFTPlan(blockSize);
+	}
+	
+	public int blockSize()
+	{
+		return blockSize;
+	}
+	
+	/*
+	 * Returns the packed spectrum of the block detect() last looked at, so that
+	 * other analyses of the same frame don't need an FFT of their own
+	 * It is only valid until the next block
+	 */
+	public double[] lastSpectrum()
+	{
+		return plan.buffer;
+	}
+	
+	/*
+	 * Windows a copy of the block starting at offset and performs FFT on it
+	 * Returns the packed spectrum (see Spectrum), which is only valid until the next block
+	 */
+	protected double[] spectrum(double[] samples, int offset)
+	{
+		return plan.forward(samples, offset, window);
+	}
+}
@@ -0,0 +1,203 @@
+package pitchTracking;
+
+import java.util.Arrays;
+
+/*
+ * The magnitude spectrum of every frame, kept as power in one flat float array,
+ * frame after frame, rows() values per frame
+ * Rows are FFT bins, semitones or pitch classes (see FrequencyScale)
+ * Memory is bounded: once maxFrames frames are held, neighbouring frames are averaged
+ * in pairs and from then on twice as many incoming frames go into each one, so a long
+ * file ends up with fewer than maxFrames coarser frames
+ */
+public class Spectrogram {
+	
+	public static final int DEFAULT_MAX_FRAMES = 2048;
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final int hop;
+	public final FrequencyScale scale;
+	public final int maxFrames;
+	
+	private final int[] low;		//first FFT bin of each band
+	private final int[] high;		//one past its last bin
+	private final int[] row;		//row each band is added into
+	private final double[] rowValues;	//frequency (LINEAR), MIDI note (LOG) or pitch class (CHROMA) of each row
+	
+	private float[] data;
+	private int frames;			//whole frames held
+	private int merge = 1;		//incoming frames averaged into each frame held
+	private final float[] pending;	//sum of the incoming frames not yet making a whole frame
+	private int pendingCount;
+	
+	public Spectrogram(float sampleRate, int blockSize, int hop, double minFrequency, double maxFrequency,
+			FrequencyScale scale, int maxFrames)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.hop = hop;
+		this.scale = scale;
+		this.maxFrames = Math.max(2, maxFrames & ~1);	//even, so frames merge in whole pairs
+		
+		double binWidth = sampleRate / blockSize;
+		int bands;
+		int rows;
+		if (scale == FrequencyScale.LINEAR)
+		{
+			int first = Math.max(1, (int) Math.ceil(minFrequency / binWidth));
+			bands = Math.max(0, Spectrum.bins(maxFrequency, sampleRate, blockSize) - first);
+			rows = bands;
+			low = new int[bands];
+			high = new int[bands];
+			row = new int[bands];
+			rowValues = new double[rows];
+			for (int b = 0; b < bands; b++)
+			{
+				low[b] = first + b;
+				high[b] = first + b + 1;
+				row[b] = b;
+				rowValues[b] = Spectrum.frequency(first + b, sampleRate, blockSize);
+			}
+		}
+		else
+		{
+			//semitone bands centered on each note, edges a quarter tone either side
+			int firstNote = (int) Math.ceil(NoteSegmenter.midi(minFrequency));
+			int lastNote = (int) Math.floor(NoteSegmenter.midi(maxFrequency));
+			bands = Math.max(0, lastNote - firstNote + 1);
+			rows = scale == FrequencyScale.CHROMA ? 12 : bands;
+			low = new int[bands];
+			high = new int[bands];
+			row = new int[bands];
+			rowValues = new double[rows];
+			for (int b = 0; b < bands; b++)
+			{
+				int note = firstNote + b;
+				low[b] = (int) Math.ceil(hertz(note - 0.5) / binWidth);
+				high[b] = (int) Math.ceil(hertz(note + 0.5) / binWidth);
+				if (high[b] <= low[b])
+				{
+					//a band narrower than a bin takes the nearest bin
+					low[b] = (int) Math.round(hertz(note) / binWidth);
+					high[b] = low[b] + 1;
+				}
+				high[b] = Math.min(high[b], blockSize / 2);
+				row[b] = scale == FrequencyScale.CHROMA ? note % 12 : b;
+			}
+			for (int r = 0; r < rows; r++)
+			{
+				rowValues[r] = scale == FrequencyScale.CHROMA ? r : firstNote + r;
+			}
+		}
+		this.data = new float[Math.min(this.maxFrames, 256) * rows];
+		this.pending = new float[rows];
+	}
+	
+	/*
+	 * Returns the frequency of a MIDI note, which need not be whole
+	 */
+	public static double hertz(double midiNote)
+	{
+		return 440 * Math.pow(2, (midiNote - 69) / 12);
+	}
+	
+	public int rows()
+	{
+		return rowValues.length;
+	}
+	
+	public int frames()
+	{
+		return frames;
+	}
+	
+	/*
+	 * Returns the frequency, MIDI note or pitch class a row stands for
+	 */
+	public double rowValue(int r)
+	{
+		return rowValues[r];
+	}
+	
+	/*
+	 * Returns the power of a row in a frame
+	 */
+	public float power(int frame, int r)
+	{
+		return data[frame * rowValues.length + r];
+	}
+	
+	/*
+	 * Returns the time in seconds at the middle of a frame
+	 */
+	public double time(int frame)
+	{
+		return ((frame + 0.5) * merge * hop + (blockSize - hop) / 2.0) / sampleRate;
+	}
+	
+	/*
+	 * Returns the seconds between the starts of two frames
+	 */
+	public double frameSeconds()
+	{
+		return (double) merge * hop / sampleRate;
+	}
+	
+	/*
+	 * Adds the next frame, from the packed spectrum of its block (see Spectrum)
+	 */
+	public void addFrame(double[] spectrum)
+	{
+		for (int b = 0; b < low.length; b++)
+		{
+			double power = 0;
+			for (int k = low[b]; k < high[b]; k++)
+			{
+				power += Spectrum.power(spectrum, blockSize, k);
+			}
+			pending[row[b]] += (float) power;
+		}
+		if (++pendingCount == merge)
+			flush();
+	}
+	
+	/*
+	 * Keeps the frames that have not yet filled a whole held frame, at the end of the audio
+	 */
+	public void finish()
+	{
+		if (pendingCount > 0)
+			flush();
+	}
+	
+	/*
+	 * Appends the average of the pending frames, then halves the resolution if full
+	 */
+	private void flush()
+	{
+		int rows = rowValues.length;
+		if ((frames + 1) * rows > data.length)
+			data = Arrays.copyOf(data, Math.min(maxFrames, 2 * frames) * rows);
+		for (int r = 0; r < rows; r++)
+		{
+			data[frames * rows + r] = pending[r] / pendingCount;
+		}
+		frames++;
+		Arrays.fill(pending, 0);
+		pendingCount = 0;
+		
+		if (frames == maxFrames)
+		{
+			for (int f = 0; f < frames / 2; f++)
+			{
+				for (int r = 0; r < rows; r++)
+				{
+					data[f * rows + r] = (data[2 * f * rows + r] + data[(2 * f + 1) * rows + r]) / 2;
+				}
+			}
+			frames /= 2;
+			merge *= 2;
+		}
+	}
+}
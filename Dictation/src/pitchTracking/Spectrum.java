@@ -0,0 +1,101 @@
+package pitchTracking;
+
+/*
+ * Reads the packed spectrum that DoubleFFT_1D.realForward (or FloatFFT_1D) leaves behind
+ * Only bins 0 through n/2 exist in the packed layout; the rest of the
+ * spectrum of a real signal is their mirror image
+ */
+public class Spectrum {
+	
+	private Spectrum()
+	{
+	}
+	
+	/*
+	 * Returns the squared magnitude of bin k of a packed spectrum of n samples
+	 */
+	public static double power(double[] packed, int n, int k)
+	{
+		if (k == 0)
+			return packed[0] * packed[0];
+		if (2 * k == n)
+			return packed[1] * packed[1];	//Nyquist bin of an even size, real only
+		if (2 * k == n - 1)
+			return packed[n - 1] * packed[n - 1] + packed[1] * packed[1];	//last bin of an odd size
+		return packed[2 * k] * packed[2 * k] + packed[2 * k + 1] * packed[2 * k + 1];
+	}
+	
+	/*
+	 * Returns the magnitude of bin k of a packed spectrum of n samples
+	 */
+	public static double magnitude(double[] packed, int n, int k)
+	{
+		return Math.sqrt(power(packed, n, k));
+	}
+	
+	/*
+	 * Returns the squared magnitude of bin k of a packed single precision spectrum
+	 * (FloatFFT_1D uses the same layout)
+	 */
+	public static double power(float[] packed, int n, int k)
+	{
+		if (k == 0)
+			return (double) packed[0] * packed[0];
+		if (2 * k == n)
+			return (double) packed[1] * packed[1];
+		if (2 * k == n - 1)
+			return (double) packed[n - 1] * packed[n - 1] + (double) packed[1] * packed[1];
+		return (double) packed[2 * k] * packed[2 * k] + (double) packed[2 * k + 1] * packed[2 * k + 1];
+	}
+	
+	/*
+	 * Returns the magnitude of bin k of a packed single precision spectrum
+	 */
+	public static double magnitude(float[] packed, int n, int k)
+	{
+		return Math.sqrt(power(packed, n, k));
+	}
+	
+	/*
+	 * Returns the phase (-pi to pi) of bin k of a packed spectrum of n samples
+	 */
+	public static double phase(double[] packed, int n, int k)
+	{
+		if (k == 0)
+			return packed[0] < 0 ? Math.PI : 0;
+		if (2 * k == n)
+			return packed[1] < 0 ? Math.PI : 0;
+		if (2 * k == n - 1)
+			return Math.atan2(packed[1], packed[n - 1]);
+		return Math.atan2(packed[2 * k + 1], packed[2 * k]);
+	}
+	
+	/*
+	 * Fills magnitudes with the magnitudes of bins 0 through bins - 1
+	 */
+	public static void magnitudes(double[] packed, int n, double[] magnitudes, int bins)
+	{
+		for (int k = 0; k < bins; k++)
+		{
+			magnitudes[k] = magnitude(packed, n, k);
+		}
+	}
+	
+	/*
+	 * Returns the number of bins from 0 up to and including the given frequency,
+	 * never more than the n/2 + 1 bins the packed layout holds
+	 */
+	public static int bins(double maxFrequency, float sampleRate, int n)
+	{
+		int bins = (int) (maxFrequency * n / sampleRate) + 1;
+		return Math.max(1, Math.min(bins, n / 2 + 1));
+	}
+	
+	/*
+	 * Returns the frequency at a (possibly fractional) bin
+	 */
+	public static double frequency(double bin, float sampleRate, int n)
+	{
+		return bin * sampleRate / n;
+	}
+}
@@ -0,0 +1,205 @@
+package pitchTracking;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import javax.sound.sampled.AudioFormat;
+
+/*
+ * The format of a PCM wav file, parsed from its RIFF header
+ * Knows where the audio data starts and how to turn its bytes into samples (-1 to 1)
+ */
+public class WavHeader {
+	
+	public static final int FORMAT_PCM = 1;
+	public static final int FORMAT_EXTENSIBLE = 0xFFFE;
+	
+	public int channels;
+	public float sampleRate;
+	public int bitsPerSample;
+	public int bytesPerSample;
+	public int blockAlign;		//bytes in one frame (one sample of every channel)
+	public long dataOffset;		//position in the file of the first audio byte
+	public long dataLength;		//number of audio bytes
+	
+	private double scale;		//divides a raw sample into the range -1 to 1
+	
+	/*
+	 * Reads the RIFF header from the start of a wav stream
+	 * Skips any chunks that aren't fmt, stopping at the start of the data chunk
+	 * The stream is left positioned on the first audio byte
+	 */
+	public static WavHeader read(InputStream in) throws IOException
+	{
+		DataInputStream data = new DataInputStream(in);
+		byte[] id = new byte[4];
+		
+		data.readFully(id);
+		if (!chunkId(id).equals("RIFF"))
+			throw new IOException("Not a RIFF file");
+		readInt(data);	//size of the rest of the file
+		data.readFully(id);
+		if (!chunkId(id).equals("WAVE"))
+			throw new IOException("Not a WAVE file");
+		
+		WavHeader header = new WavHeader();
+		boolean haveFormat = false;
+		long position = 12;
+		while (true)
+		{
+			try {
+				data.readFully(id);
+			} catch (EOFException e) {
+				throw new IOException("No data chunk in wav file");
+			}
+			long size = readInt(data) & 0xFFFFFFFFL;
+			position += 8;
+			String chunk = chunkId(id);
+			
+			if (chunk.equals("fmt "))
+			{
+				int format = readShort(data);
+				header.channels = readShort(data);
+				header.sampleRate = readInt(data);
+				readInt(data);	//byte rate
+				header.blockAlign = readShort(data);
+				header.bitsPerSample = readShort(data);
+				long read = 16;
+				if (format == FORMAT_EXTENSIBLE && size >= 40)
+				{
+					readShort(data);	//extension size
+					readShort(data);	//valid bits per sample
+					readInt(data);		//channel mask
+					format = readShort(data);	//first two bytes of the sub-format GUID
+					read += 10;
+				}
+				if (format != FORMAT_PCM)
+					throw new IOException("Unsupported wav encoding " + format + ", only PCM is supported");
+				skip(data, size - read);
+				haveFormat = true;
+			}
+			else if (chunk.equals("data"))
+			{
+				if (!haveFormat)
+					throw new IOException("Data chunk comes before fmt chunk");
+				header.dataOffset = position;
+				header.dataLength = size;
+				break;
+			}
+			else
+			{
+				skip(data, size);
+			}
+			
+			//chunks are padded to an even length
+			if ((size & 1) != 0)
+				skip(data, 1);
+			position += size + (size & 1);
+		}
+		
+		header.bytesPerSample = (header.bitsPerSample + 7) / 8;
+		if (header.bytesPerSample < 1 || header.bytesPerSample > 4)
+			throw new IOException("Unsupported sample size " + header.bitsPerSample + " bits");
+		if (header.channels < 1 || header.blockAlign != header.channels * header.bytesPerSample)
+			throw new IOException("Bad block alignment " + header.blockAlign + " for " + header.channels + " channels");
+		header.scale = 1.0 / (1L << (header.bytesPerSample * 8 - 1));
+		return header;
+	}
+	
+	/*
+	 * Describes audio in a javax.sound format, such as a recording line's, so its
+	 * bytes can be decoded the same way as a wav file's
+	 * Only little-endian PCM is supported, unsigned for 8-bit and signed above
+	 */
+	public static WavHeader forFormat(AudioFormat format)
+	{
+		WavHeader header = new WavHeader();
+		header.channels = format.getChannels();
+		header.sampleRate = format.getSampleRate();
+		header.bitsPerSample = format.getSampleSizeInBits();
+		header.bytesPerSample = (header.bitsPerSample + 7) / 8;
+		header.blockAlign = format.getFrameSize();
+		
+		AudioFormat.Encoding expected = header.bytesPerSample == 1 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+		if (!format.getEncoding().equals(expected) || (header.bytesPerSample > 1 && format.isBigEndian()))
+			throw new IllegalArgumentException("Unsupported audio format " + format);
+		if (header.bytesPerSample > 4 || header.blockAlign != header.channels * header.bytesPerSample)
+			throw new IllegalArgumentException("Unsupported audio format " + format);
+		header.scale = 1.0 / (1L << (header.bytesPerSample * 8 - 1));
+		return header;
+	}
+	
+	/*
+	 * Returns the number of frames (one sample per channel) of audio data
+	 */
+	public long frames()
+	{
+		return dataLength / blockAlign;
+	}
+	
+	/*
+	 * Returns the length of the audio in seconds
+	 */
+	public double seconds()
+	{
+		return frames() / (double) sampleRate;
+	}
+	
+	/*
+	 * Decodes one sample starting at the given byte of a little-endian buffer
+	 * 8-bit samples are unsigned, the wider sizes are signed
+	 * Returns the sample scaled to -1 to 1
+	 */
+	public double sample(ByteBuffer buffer, int index)
+	{
+		int value;
+		switch (bytesPerSample)
+		{
+		case 1:
+			value = (buffer.get(index) & 0xFF) - 128;
+			break;
+		case 2:
+			value = buffer.getShort(index);
+			break;
+		case 3:
+			value = (buffer.get(index) & 0xFF)
+					| (buffer.get(index + 1) & 0xFF) << 8
+					| buffer.get(index + 2) << 16;
+			break;
+		default:
+			value = buffer.getInt(index);
+			break;
+		}
+		return value * scale;
+	}
+	
+	private static String chunkId(byte[] id)
+	{
+		return new String(id, 0, 4, StandardCharsets.US_ASCII);
+	}
+	
+	private static int readInt(DataInputStream in) throws IOException
+	{
+		return Integer.reverseBytes(in.readInt());
+	}
+	
+	private static int readShort(DataInputStream in) throws IOException
+	{
+		return Short.reverseBytes(in.readShort()) & 0xFFFF;
+	}
+	
+	private static void skip(DataInputStream in, long bytes) throws IOException
+	{
+		while (bytes > 0)
+		{
+			int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+			if (skipped <= 0)
+				throw new EOFException("Wav file ends inside a chunk");
+			bytes -= skipped;
+		}
+	}
+}
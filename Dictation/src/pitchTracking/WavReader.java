@@ -0,0 +1,181 @@
+package pitchTracking;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ * Streams the samples of a PCM wav file without loading the file into memory
+ * Handles 8, 16, 24 and 32-bit audio with any number of channels
+ * Samples come out scaled to -1 to 1, either mixed down to mono or interleaved
+ */
+public class WavReader implements Closeable {
+	
+	public static final int CHUNK_FRAMES = 4096;	//frames decoded per read from the file
+	
+	public final WavHeader header;
+	
+	private final InputStream in;
+	private final byte[] bytes;			//raw bytes of one chunk, reused
+	private final ByteBuffer buffer;	//little-endian view of bytes
+	private long bytesLeft;				//audio bytes not yet read from the file
+	
+	public WavReader(File soundFile) throws IOException
+	{
+		this(new BufferedInputStream(new FileInputStream(soundFile)));
+	}
+	
+	public WavReader(InputStream in) throws IOException
+	{
+		this.in = in;
+		try {
+			this.header = WavHeader.read(in);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		this.bytes = new byte[CHUNK_FRAMES * header.blockAlign];
+		this.buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		this.bytesLeft = header.dataLength;
+	}
+	
+	/*
+	 * Reads up to length frames, averaging the channels of each into one sample
+	 * Returns the number of samples read, or -1 at the end of the data
+	 */
+	public int read(double[] samples, int offset, int length) throws IOException
+	{
+		int channels = header.channels;
+		int frames = readChunk(length);
+		if (frames <= 0)
+			return frames;
+		
+		int pos = 0;
+		for (int i = 0; i < frames; i++)
+		{
+			double sum = 0;
+			for (int c = 0; c < channels; c++)
+			{
+				sum += header.sample(buffer, pos);
+				pos += header.bytesPerSample;
+			}
+			samples[offset + i] = sum / channels;
+		}
+		return frames;
+	}
+	
+	/*
+	 * Reads up to length frames into single precision samples, as above
+	 * 16-bit samples lose nothing this way
+	 * Returns the number of samples read, or -1 at the end of the data
+	 */
+	public int read(float[] samples, int offset, int length) throws IOException
+	{
+		int channels = header.channels;
+		int frames = readChunk(length);
+		if (frames <= 0)
+			return frames;
+		
+		int pos = 0;
+		for (int i = 0; i < frames; i++)
+		{
+			double sum = 0;
+			for (int c = 0; c < channels; c++)
+			{
+				sum += header.sample(buffer, pos);
+				pos += header.bytesPerSample;
+			}
+			samples[offset + i] = (float) (sum / channels);
+		}
+		return frames;
+	}
+	
+	/*
+	 * Reads up to frames frames with the channels left interleaved
+	 * Returns the number of frames read, or -1 at the end of the data
+	 */
+	public int readInterleaved(double[] samples, int offset, int frames) throws IOException
+	{
+		frames = readChunk(frames);
+		if (frames <= 0)
+			return frames;
+		
+		int count = frames * header.channels;
+		for (int i = 0; i < count; i++)
+		{
+			samples[offset + i] = header.sample(buffer, i * header.bytesPerSample);
+		}
+		return frames;
+	}
+	
+	/*
+	 * Fills samples with length mono samples, reading until it is full or the data ends
+	 * Returns the number of samples read, which is only short of length at the end
+	 */
+	public int readFully(double[] samples, int offset, int length) throws IOException
+	{
+		int total = 0;
+		while (total < length)
+		{
+			int read = read(samples, offset + total, length - total);
+			if (read < 0)
+				break;
+			total += read;
+		}
+		return total;
+	}
+	
+	/*
+	 * Fills single precision samples as readFully does
+	 * Returns the number of samples read, which is only short of length at the end
+	 */
+	public int readFully(float[] samples, int offset, int length) throws IOException
+	{
+		int total = 0;
+		while (total < length)
+		{
+			int read = read(samples, offset + total, length - total);
+			if (read < 0)
+				break;
+			total += read;
+		}
+		return total;
+	}
+	
+	/*
+	 * Reads the raw bytes of up to frames frames (at most one chunk) into the buffer
+	 * Returns the number of whole frames read, or -1 at the end of the data
+	 */
+	private int readChunk(int frames) throws IOException
+	{
+		long available = bytesLeft / header.blockAlign;
+		if (available == 0)
+			return -1;
+		frames = (int) Math.min(Math.min(frames, CHUNK_FRAMES), available);
+		
+		int want = frames * header.blockAlign;
+		int got = 0;
+		while (got < want)
+		{
+			int read = in.read(bytes, got, want - got);
+			if (read < 0)
+				break;
+			got += read;
+		}
+		
+		//a truncated file ends at its last whole frame
+		frames = got / header.blockAlign;
+		bytesLeft = got < want ? 0 : bytesLeft - got;
+		return frames == 0 ? -1 : frames;
+	}
+	
+	public void close() throws IOException
+	{
+		in.close();
+	}
+}
@@ -0,0 +1,159 @@
+package pitchTracking;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * A window that tapers a block of samples before it is transformed
+ * The coefficients for each block size are computed once and kept in a table,
+ * so windowing a block costs one multiply per sample
+ * Tables are shared safely between threads
+ */
+public abstract class WindowFunction {
+	
+	public static final WindowFunction HAMMING = new WindowFunction("hamming") {
+		protected double value(int i, int n)
+		{
+			return 0.54 - 0.46 * Math.cos(2 * Math.PI * i / n);
+		}
+	};
+	
+	public static final WindowFunction HANN = new WindowFunction("hann") {
+		protected double value(int i, int n)
+		{
+			return 0.5 - 0.5 * Math.cos(2 * Math.PI * i / n);
+		}
+	};
+	
+	//four term Blackman-Harris, sidelobes below -92dB
+	public static final WindowFunction BLACKMAN_HARRIS = new WindowFunction("blackman-harris") {
+		protected double value(int i, int n)
+		{
+			double x = 2 * Math.PI * i / n;
+			return 0.35875 - 0.48829 * Math.cos(x) + 0.14128 * Math.cos(2 * x) - 0.01168 * Math.cos(3 * x);
+		}
+	};
+	
+	public static final double KAISER_BETA = 8.6;	//about the same sidelobes as Blackman-Harris
+	public static final WindowFunction KAISER = kaiser(KAISER_BETA);
+	
+	public final String name;
+	
+	private final ConcurrentMap<Integer, double[]> tables = new ConcurrentHashMap<Integer, double[]>();
+	
+	protected WindowFunction(String name)
+	{
+		this.name = name;
+	}
+	
+	/*
+	 * Returns the value of the window (0 through 1) at sample i of a block of n samples
+	 * Windows are periodic: sample n would equal sample 0
+	 */
+	protected abstract double value(int i, int n);
+	
+	/*
+	 * Returns a Kaiser window with the given shape
+	 * Larger beta gives lower sidelobes and a wider main lobe
+	 */
+	public static WindowFunction kaiser(final double beta)
+	{
+		return new WindowFunction("kaiser") {
+			private final double scale = 1 / besselI0(beta);
+			
+			protected double value(int i, int n)
+			{
+				double x = 2.0 * i / n - 1;
+				return besselI0(beta * Math.sqrt(1 - x * x)) * scale;
+			}
+		};
+	}
+	
+	/*
+	 * Returns the window with the given name, or null if there is no such window
+	 */
+	public static WindowFunction forName(String name)
+	{
+		WindowFunction[] windows = { HAMMING, HANN, BLACKMAN_HARRIS, KAISER };
+		for (WindowFunction window : windows)
+		{
+			if (window.name.equalsIgnoreCase(name))
+				return window;
+		}
+		return null;
+	}
+	
+	/*
+	 * Returns the table of coefficients for blocks of n samples
+	 * The table is computed the first time a size is asked for
+	 */
+	public double[] table(int n)
+	{
+		double[] table = tables.get(n);
+		if (table == null)
+		{
+			table = new double[n];
+			for (int i = 0; i < n; i++)
+			{
+				table[i] = value(i, n);
+			}
+			double[] existing = tables.putIfAbsent(n, table);
+			if (existing != null)
+				table = existing;
+		}
+		return table;
+	}
+	
+	/*
+	 * Windows a whole block of samples in place
+	 */
+	public void apply(double[] samples)
+	{
+		apply(samples, samples.length);
+	}
+	
+	/*
+	 * Windows the first n samples of an array in place
+	 */
+	public void apply(double[] samples, int n)
+	{
+		double[] table = table(n);
+		for (int i = 0; i < n; i++)
+		{
+			samples[i] *= table[i];
+		}
+	}
+	
+	/*
+	 * Windows the first n single precision samples of an array in place
+	 */
+	public void apply(float[] samples, int n)
+	{
+		double[] table = table(n);
+		for (int i = 0; i < n; i++)
+		{
+			samples[i] *= table[i];
+		}
+	}
+	
+	/*
+	 * The zeroth order modified Bessel function of the first kind, by its power series
+	 */
+	private static double besselI0(double x)
+	{
+		double sum = 1;
+		double term = 1;
+		double halfSquared = x * x / 4;
+		for (int k = 1; term > sum * 1e-16; k++)
+		{
+			term *= halfSquared / ((double) k * k);
+			sum += term;
+		}
+		return sum;
+	}
+	
+	public String toString()
+	{
+		return name;
+	}
+}
@@ -0,0 +1,145 @@
+package pitchTracking;
+
+import java.util.Arrays;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+/*
+ * The YIN pitch detector (de Cheveigne and Kawahara, 2002)
+ * Looks for the smallest lag at which the block repeats itself, which follows
+ * the fundamental where the strongest spectral peak often locks onto a harmonic
+ * The difference function comes from the autocorrelation, computed with one
+ * forward and one inverse FFT, so a block costs O(n log n) instead of O(n^2)
+ */
+public class YinPitchDetector implements PitchDetector {
+	
+	public static final double DEFAULT_THRESHOLD = 0.15;
+	
+	public final float sampleRate;
+	public final int blockSize;
+	public final double minFrequency;	//lowest pitch reported
+	public final double maxFrequency;	//highest pitch reported
+	
+	public double threshold = DEFAULT_THRESHOLD;	//dips in the normalized difference below this count as periods
+	
+	private final int minLag;
+	private final int maxLag;
+	private final int fftSize;				//at least twice the block, so the correlation doesn't wrap around
+	private final DoubleFFT_1D fft;
+	private final double[] correlation;		//the FFT buffer, which ends up holding the autocorrelation
+	private final double[] energy;			//energy[i] is the sum of the squares of the first i samples
+	private final double[] difference;		//the cumulative mean normalized difference, by lag
+	
+	public YinPitchDetector(float sampleRate, int blockSize, double minFrequency, double maxFrequency)
+	{
+		this.sampleRate = sampleRate;
+		this.blockSize = blockSize;
+		this.minFrequency = minFrequency;
+		this.maxFrequency = maxFrequency;
+		
+		minLag = Math.max(2, (int) (sampleRate / maxFrequency));
+		maxLag = Math.min(blockSize / 2, (int) Math.ceil(sampleRate / minFrequency));
+		
+		int size = 1;
+		while (size < 2 * blockSize)
+			size *= 2;
+		fftSize = size;
+		fft = new DoubleFFT_1D(fftSize);
+		correlation = new double[fftSize];
+		energy = new double[blockSize + 1];
+		difference = new double[maxLag + 2];
+	}
+	
+	public int blockSize()
+	{
+		return blockSize;
+	}
+	
+	/*
+	 * Returns the pitch of the block, or NaN if no lag repeats well enough
+	 */
+	public double detect(double[] samples, int offset)
+	{
+		int n = blockSize;
+		autocorrelate(samples, offset);
+		
+		for (int i = 0; i < n; i++)
+		{
+			double x = samples[offset + i];
+			energy[i + 1] = energy[i] + x * x;
+		}
+		
+		//d(lag) is the sum over the overlap of (x[j] - x[j + lag])^2,
+		//which expands to the energies of the two overlapping parts less twice the correlation
+		difference[0] = 1;
+		double sum = 0;
+		for (int lag = 1; lag <= maxLag + 1 && lag < n; lag++)
+		{
+			double d = energy[n - lag] + (energy[n] - energy[lag]) - 2 * correlation[lag];
+			sum += d;
+			difference[lag] = sum > 0 ? d * lag / sum : 1;
+		}
+		
+		int lag = bestLag();
+		if (lag < 0)
+			return Double.NaN;
+		
+		//refine the lag with a parabola through the dip
+		double refined = lag + PeakInterpolation.QUADRATIC.offset(-difference[lag - 1], -difference[lag], -difference[lag + 1]);
+		return sampleRate / refined;
+	}
+	
+	/*
+	 * Leaves the autocorrelation of the block in correlation[0 .. n)
+	 */
+	private void autocorrelate(double[] samples, int offset)
+	{
+		System.arraycopy(samples, offset, correlation, 0, blockSize);
+		Arrays.fill(correlation, blockSize, fftSize, 0);
+		fft.realForward(correlation);
+		
+		//replace the spectrum with its power, which transforms back to the autocorrelation
+		correlation[0] *= correlation[0];
+		correlation[1] *= correlation[1];
+		for (int k = 2; k < fftSize; k += 2)
+		{
+			correlation[k] = correlation[k] * correlation[k] + correlation[k + 1] * correlation[k + 1];
+			correlation[k + 1] = 0;
+		}
+		fft.realInverse(correlation, true);
+	}
+	
+	/*
+	 * Returns the first lag in range whose normalized difference dips below the
+	 * threshold, moved on to the bottom of that dip, or -1 if there is none
+	 */
+	private int bestLag()
+	{
+		for (int lag = minLag; lag <= maxLag; lag++)
+		{
+			if (difference[lag] < threshold)
+			{
+				while (lag < maxLag && difference[lag + 1] < difference[lag])
+					lag++;
+				return lag;
+			}
+		}
+		return -1;
+	}
+	
+	public boolean usesPreviousBlock()
+	{
+		return false;
+	}
+	
+	public void reset()
+	{
+	}
+	
+	public PitchDetector copy()
+	{
+		YinPitchDetector copy = new YinPitchDetector(sampleRate, blockSize, minFrequency, maxFrequency);
+		copy.threshold = threshold;
+		return copy;
+	}
+}